@@ -0,0 +1,53 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.List;
+
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.RadetzkyDiscoveredBoard;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+
+// Scripted opponent without search, always takes the action with the best heuristic
+public class GreedyPlayer implements HarnessPlayer {
+    private final int playerId;
+
+    public GreedyPlayer(int playerId) {
+        this.playerId = playerId;
+    }
+
+    @Override
+    public void start(Empire game) {
+    }
+
+    @Override
+    public List<EmpireEvent> decide(Empire game) {
+        var discoveredBoard = RadetzkyDiscoveredBoard.get(playerId, game);
+        var cityIndex = CityIndex.of(game);
+        EmpireEvent best = null;
+        var bestHeuristic = 0f; // doing nothing is better than a harmful action
+        for (EmpireEvent action : game.getPossibleActions(playerId)) {
+            var heuristic = EventHeuristics.calculateTotalHeuristic(game, cityIndex, action, discoveredBoard);
+            if (heuristic > bestHeuristic) {
+                best = action;
+                bestHeuristic = heuristic;
+            }
+        }
+        return best == null ? List.of() : List.of(best);
+    }
+
+    @Override
+    public int getIterationsOfLastDecision() {
+        return 0;
+    }
+
+    @Override
+    public void onActionExecuted(Empire game, EmpireEvent action) {
+    }
+
+    @Override
+    public void onActionRejected(EmpireEvent action) {
+    }
+
+    @Override
+    public void stop() {
+    }
+}
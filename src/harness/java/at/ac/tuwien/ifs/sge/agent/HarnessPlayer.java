@@ -0,0 +1,23 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.List;
+
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+
+// A player of a Match, it is asked for its actions with its view of the game and told about every event it sees
+public interface HarnessPlayer {
+    void start(Empire game);
+
+    // The actions to send this round, none to do nothing
+    List<EmpireEvent> decide(Empire game) throws Exception;
+
+    // Search iterations of the last decision, 0 for players that do not search
+    int getIterationsOfLastDecision();
+
+    void onActionExecuted(Empire game, EmpireEvent action);
+
+    void onActionRejected(EmpireEvent action);
+
+    void stop();
+}
@@ -0,0 +1,102 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import at.ac.tuwien.ifs.sge.core.engine.communication.ActionResult;
+import at.ac.tuwien.ifs.sge.core.engine.communication.events.GameActionEvent;
+import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+
+// One game between in-process players on a simulated clock. Every round each player decides on its own copy of the
+// game, then the actions are executed and the game time advances by the longest decision, as if the engine had kept
+// running while the players were thinking.
+// Like with the engine, players only get their own view of the game and are told about every event it reports to them.
+public class Match {
+    private static final int MIN_STEP = 100; // ms of game time per round, even if all players decide faster
+    private final HarnessPlayer[] players;
+    private final MatchStatistics[] statistics;
+    private final int mapSize;
+    private final long seed;
+    private final long maxGameTime;
+
+    public Match(HarnessPlayer[] players, int mapSize, long seed, long maxGameTime) {
+        this.players = players;
+        this.mapSize = mapSize;
+        this.seed = seed;
+        this.maxGameTime = maxGameTime;
+        this.statistics = new MatchStatistics[players.length];
+        for (int i = 0; i < players.length; i++) {
+            statistics[i] = new MatchStatistics();
+            statistics[i].games = 1;
+        }
+    }
+
+    // Returns the statistics of every player
+    public MatchStatistics[] play() throws Exception {
+        var game = EmpireGames.create(mapSize, seed, players.length);
+        for (int i = 0; i < players.length; i++) {
+            players[i].start(EmpireGames.getPlayerView(game, i));
+        }
+        try {
+            while (!game.isGameOver() && game.getGameClock().getGameTimeMs() < maxGameTime) {
+                playRound(game);
+            }
+        } finally {
+            for (HarnessPlayer player : players) {
+                player.stop();
+            }
+        }
+        if (game.isGameOver()) {
+            var utilities = game.getGameUtilityValue();
+            for (int i = 0; i < players.length; i++) {
+                if (utilities[i] == 1D) statistics[i].wins++;
+            }
+        }
+        return statistics;
+    }
+
+    private void playRound(Empire game) throws Exception {
+        var longestDecision = (long) MIN_STEP;
+        List<List<EmpireEvent>> actions = new ArrayList<>(players.length);
+        for (int i = 0; i < players.length; i++) {
+            var start = System.currentTimeMillis();
+            actions.add(players[i].decide(EmpireGames.getPlayerView(game, i)));
+            var latency = System.currentTimeMillis() - start;
+            statistics[i].onDecision(latency, players[i].getIterationsOfLastDecision());
+            longestDecision = Math.max(longestDecision, latency);
+        }
+
+        for (int i = 0; i < players.length; i++) {
+            for (EmpireEvent action : actions.get(i)) {
+                statistics[i].actionsSent++;
+                if (!game.isValidAction(action, i)) {
+                    statistics[i].actionsRejected++;
+                    players[i].onActionRejected(action);
+                    continue;
+                }
+                game.scheduleActionEvent(new GameActionEvent<>(i, action, game.getGameClock().getGameTimeMs() + 1));
+            }
+        }
+
+        Map<Integer, Map<EmpireEvent, ActionResult>> updates;
+        try {
+            updates = game.advance(longestDecision);
+        } catch (ActionException e) {
+            // an action became invalid before it was executed, the engine would reject it as well
+            System.err.println("Action failed: " + e.getMessage());
+            return;
+        }
+        // the orders of the players and the events of the engine, e.g. vision updates and spawned units
+        for (int i = 0; i < players.length; i++) {
+            var playerUpdates = updates.get(i);
+            if (playerUpdates == null) continue;
+            var view = EmpireGames.getPlayerView(game, i);
+            for (Map.Entry<EmpireEvent, ActionResult> entry : playerUpdates.entrySet()) {
+                if (entry.getValue().wasSuccessful()) players[i].onActionExecuted(view, entry.getKey());
+            }
+        }
+    }
+}
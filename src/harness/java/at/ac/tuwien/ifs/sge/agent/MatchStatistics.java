@@ -0,0 +1,57 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Arrays;
+
+// What one player did over one or more matches
+public class MatchStatistics {
+    private long[] latencies = new long[256]; // in ms
+    private int decisions = 0;
+    private long iterations = 0;
+    public int actionsSent = 0;
+    public int actionsRejected = 0;
+    public int wins = 0;
+    public int games = 0;
+
+    public void onDecision(long latency, int iterations) {
+        if (decisions == latencies.length) latencies = Arrays.copyOf(latencies, decisions * 2);
+        latencies[decisions++] = latency;
+        this.iterations += iterations;
+    }
+
+    public void add(MatchStatistics other) {
+        for (int i = 0; i < other.decisions; i++) {
+            onDecision(other.latencies[i], 0);
+        }
+        iterations += other.iterations;
+        actionsSent += other.actionsSent;
+        actionsRejected += other.actionsRejected;
+        wins += other.wins;
+        games += other.games;
+    }
+
+    public long getLatencyPercentile(double percentile) {
+        if (decisions == 0) return 0;
+        var sorted = Arrays.copyOf(latencies, decisions);
+        Arrays.sort(sorted);
+        var index = (int) Math.ceil(percentile / 100 * decisions) - 1;
+        return sorted[Math.max(0, Math.min(decisions - 1, index))];
+    }
+
+    public float getIterationsPerDecision() {
+        return decisions == 0 ? 0 : (float) iterations / decisions;
+    }
+
+    public float getWinRate() {
+        return games == 0 ? 0 : (float) wins / games;
+    }
+
+    @Override
+    public String toString() {
+        return "decisions: " + decisions +
+                ", iterations per decision: " + getIterationsPerDecision() +
+                ", latency p50/p90/p99/max: " + getLatencyPercentile(50) + "/" + getLatencyPercentile(90) + "/" + getLatencyPercentile(99) + "/" + getLatencyPercentile(100) + " ms" +
+                ", actions sent: " + actionsSent +
+                ", rejected: " + actionsRejected +
+                ", wins: " + wins + "/" + games + " (" + getWinRate() + ")";
+    }
+}
@@ -0,0 +1,45 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.List;
+
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+
+// Runs the real agent without the engine connection
+public class RadetzkyPlayer implements HarnessPlayer {
+    private final Radetzky agent;
+
+    public RadetzkyPlayer(int playerId, int logLevel) {
+        this.agent = new Radetzky(playerId, "Radetzky-" + playerId, logLevel);
+    }
+
+    @Override
+    public void start(Empire game) {
+        agent.startHeadless(game);
+    }
+
+    @Override
+    public List<EmpireEvent> decide(Empire game) throws Exception {
+        return agent.decide(game);
+    }
+
+    @Override
+    public int getIterationsOfLastDecision() {
+        return agent.getSearch().getIterationsOfLastSearch();
+    }
+
+    @Override
+    public void onActionExecuted(Empire game, EmpireEvent action) {
+        agent.onActionExecuted(game, action);
+    }
+
+    @Override
+    public void onActionRejected(EmpireEvent action) {
+        agent.onActionRejected(action);
+    }
+
+    @Override
+    public void stop() {
+        agent.stopHeadless();
+    }
+}
@@ -0,0 +1,46 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+// Plays matches of Radetzky against itself or a scripted opponent without the engine and prints what every player did.
+// Run with ./gradlew selfPlay, the settings of the agent (-Dradetzky.<name>) apply to every Radetzky player.
+//   -Dradetzky.games=<number of matches, default 10>
+//   -Dradetzky.opponent=radetzky|greedy, default radetzky
+//   -Dradetzky.mapSize=<width and height of the map, default 40>
+//   -Dradetzky.matchSeed=<seed of the first map, the following matches use the next seeds, default 1>
+//   -Dradetzky.maxGameSeconds=<game time after which a match is a draw, default 600>
+//   -Dradetzky.logLevel=<log level of the agents, default 1>
+public class SelfPlay {
+    private static final int NUMBER_OF_PLAYERS = 2;
+
+    public enum Opponent {
+        RADETZKY, GREEDY
+    }
+
+    public static void main(String[] args) throws Exception {
+        var games = Integer.getInteger("radetzky.games", 10);
+        var opponent = Opponent.valueOf(System.getProperty("radetzky.opponent", Opponent.RADETZKY.name()).toUpperCase());
+        var mapSize = Integer.getInteger("radetzky.mapSize", 40);
+        var seed = Long.getLong("radetzky.matchSeed", 1);
+        var maxGameTime = Long.getLong("radetzky.maxGameSeconds", 600) * 1000;
+        var logLevel = Integer.getInteger("radetzky.logLevel", 1);
+
+        var total = new MatchStatistics[NUMBER_OF_PLAYERS];
+        for (int i = 0; i < NUMBER_OF_PLAYERS; i++) {
+            total[i] = new MatchStatistics();
+        }
+        for (int game = 0; game < games; game++) {
+            var players = new HarnessPlayer[NUMBER_OF_PLAYERS];
+            players[0] = new RadetzkyPlayer(0, logLevel);
+            players[1] = opponent == Opponent.GREEDY ? new GreedyPlayer(1) : new RadetzkyPlayer(1, logLevel);
+            var statistics = new Match(players, mapSize, seed + game, maxGameTime).play();
+            System.out.println("game " + (game + 1) + "/" + games + " (seed " + (seed + game) + ")");
+            for (int i = 0; i < NUMBER_OF_PLAYERS; i++) {
+                System.out.println("  player " + i + ": " + statistics[i]);
+                total[i].add(statistics[i]);
+            }
+        }
+        System.out.println("total over " + games + " games against " + opponent.name().toLowerCase());
+        for (int i = 0; i < NUMBER_OF_PLAYERS; i++) {
+            System.out.println("  player " + i + ": " + total[i]);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.HashMap;
+
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredBoard;
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.EnemyDiscoveredBoard;
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.RadetzkyDiscoveredBoard;
+import at.ac.tuwien.ifs.sge.agent.unitHeuristics.EnemyUnitHeuristics;
+import at.ac.tuwien.ifs.sge.agent.unitHeuristics.RadetzkyUnitHeuristics;
+import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
+import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+
+// A fixed position to benchmark on. The game is generated from a fixed seed and played forward by both players with
+// the rollout policy, so every fork sees the same position. The benchmarks run on the view of Radetzky, with the fog of
+// war the agent has in a real match.
+@State(Scope.Benchmark)
+public class EmpireFixture {
+    public static final int RADETZKY_PLAYER_ID = 0;
+    private static final int NUMBER_OF_PLAYERS = 2;
+    private static final long SEED = 42;
+    private static final int STEP = 1000;
+
+    public enum MapSize {
+        SMALL(30), LARGE(120);
+
+        public final int size;
+
+        MapSize(int size) {
+            this.size = size;
+        }
+    }
+
+    public enum Phase {
+        EARLY(0), MID(120), LATE(400);
+
+        public final int seconds;
+
+        Phase(int seconds) {
+            this.seconds = seconds;
+        }
+    }
+
+    @Param
+    public MapSize map;
+
+    @Param
+    public Phase phase;
+
+    public SimulationState state;
+
+    @Setup(Level.Trial)
+    public void setUp() throws ActionException {
+        var game = EmpireGames.create(map.size, SEED, NUMBER_OF_PLAYERS);
+        var random = new RandomSource(SEED, 0);
+        var played = createState(game);
+        var currentPlayer = 0;
+        for (int second = 0; second < phase.seconds && !game.isGameOver(); second++) {
+            var possibleActions = game.getPossibleActions(currentPlayer);
+            if (!possibleActions.isEmpty()) {
+                var action = EventHeuristics.selectBestRandomly(random, game, played.getCityIndex(), possibleActions, played.discoveredBoards[currentPlayer]);
+                if (action != null) played.apply(currentPlayer, action);
+            }
+            played.advance(STEP);
+            currentPlayer = (currentPlayer + 1) % NUMBER_OF_PLAYERS;
+        }
+        state = createState(EmpireGames.getPlayerView(game, RADETZKY_PLAYER_ID));
+    }
+
+    // Same heuristics as Radetzky.initHeuristics
+    private static SimulationState createState(Empire game) {
+        var boards = new DiscoveredBoard[NUMBER_OF_PLAYERS];
+        var heuristics = new UnitHeuristics[NUMBER_OF_PLAYERS];
+        for (int i = 0; i < NUMBER_OF_PLAYERS; i++) {
+            if (i == RADETZKY_PLAYER_ID) {
+                var board = RadetzkyDiscoveredBoard.get(i, game);
+                boards[i] = board;
+                heuristics[i] = new RadetzkyUnitHeuristics(i, game.getUnitsByPlayer(i), new HashMap<>(), board);
+            } else {
+                var board = EnemyDiscoveredBoard.get(i, game);
+                boards[i] = board;
+                heuristics[i] = new EnemyUnitHeuristics(i, board);
+            }
+        }
+        return new SimulationState(game, heuristics, boards);
+    }
+
+    public int getExecutionTime() {
+        return STEP;
+    }
+
+    public SearchContext createContext() {
+        var config = SearchConfig.fromSystemProperties();
+        return new SearchContext(STEP, RADETZKY_PLAYER_ID, state, new GameStateCache(256, 1), 0, new NodeBudget(config.maxNodes), null, null, config);
+    }
+}
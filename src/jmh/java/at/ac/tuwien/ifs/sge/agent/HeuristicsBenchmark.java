@@ -0,0 +1,88 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.ArrayList;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredBoard;
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredTiles;
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.RadetzkyDiscoveredBoard;
+import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class HeuristicsBenchmark {
+    private SimulationState state;
+    private Set<EmpireEvent> possibleActions;
+    private ArrayList<EmpireEvent> actions;
+    private RandomSource random;
+    private DiscoveredBoard discoveredBoard;
+    private DiscoveredTiles discoveredTiles;
+    private ArrayList<EmpireUnit> units;
+
+    @Setup(Level.Trial)
+    public void setUp(EmpireFixture fixture) {
+        state = fixture.state;
+        possibleActions = state.game.getPossibleActions(EmpireFixture.RADETZKY_PLAYER_ID);
+        actions = new ArrayList<>(possibleActions);
+        random = new RandomSource(0, 0);
+        discoveredBoard = state.discoveredBoards[EmpireFixture.RADETZKY_PLAYER_ID];
+        discoveredTiles = DiscoveredTiles.scan(state.game.getBoard());
+        units = new ArrayList<>(state.game.getUnitsByPlayer(EmpireFixture.RADETZKY_PLAYER_ID));
+    }
+
+    // all actions of one node, as rated by the GameNode constructor
+    @Benchmark
+    public void calculateTotalHeuristic(Blackhole blackhole) {
+        for (int i = 0; i < actions.size(); i++) {
+            blackhole.consume(EventHeuristics.calculateTotalHeuristic(state.game, state.getCityIndex(), actions.get(i), discoveredBoard));
+        }
+    }
+
+    // one rollout ply
+    @Benchmark
+    public EmpireEvent selectBestRandomly() {
+        return EventHeuristics.selectBestRandomly(random, state.game, state.getCityIndex(), possibleActions, discoveredBoard);
+    }
+
+    @Benchmark
+    public UnitHeuristics[] copyUnitHeuristics() {
+        return UnitHeuristics.copy(state.unitHeuristics);
+    }
+
+    @Benchmark
+    public DiscoveredBoard[] copyDiscoveredBoards() {
+        return DiscoveredBoard.copy(state.discoveredBoards);
+    }
+
+    // what a VisionUpdate of radetzky costs once nothing new is discovered
+    @Benchmark
+    public DiscoveredTiles visionUpdate() {
+        return discoveredTiles.update(state.game.getBoard(), units);
+    }
+
+    // the full scan when the board is created
+    @Benchmark
+    public RadetzkyDiscoveredBoard scanDiscoveredBoard() {
+        return RadetzkyDiscoveredBoard.get(EmpireFixture.RADETZKY_PLAYER_ID, state.game);
+    }
+}
@@ -0,0 +1,71 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class SearchBenchmark {
+    private static final int SIMULATION_DEPTH = 30;
+    private EmpireFixture fixture;
+    private RandomSource random;
+    private SearchContext context;
+    private GameNode root;
+    private AbstractRollout abstractRollout;
+
+    @Setup(Level.Trial)
+    public void setUp(EmpireFixture fixture) {
+        this.fixture = fixture;
+        this.random = new RandomSource(0, 0);
+        this.context = fixture.createContext();
+        this.abstractRollout = AbstractRollout.of(fixture.state);
+    }
+
+    @Setup(Level.Invocation)
+    public void createRoot() {
+        root = new GameNode(fixture.createContext(), EmpireFixture.RADETZKY_PLAYER_ID);
+    }
+
+    // creates a child for every action of the root, each child builds its state
+    @Benchmark
+    public GameNode expandRoot() {
+        root.expand();
+        return root;
+    }
+
+    // one full engine rollout from the root position
+    @Benchmark
+    public GameNode simulate() {
+        root.simulate(random, SIMULATION_DEPTH, Long.MAX_VALUE);
+        return root;
+    }
+
+    // one rollout of the abstract model from the root position, on a copy so every invocation starts there
+    @Benchmark
+    public int simulateAbstract() {
+        var rollout = abstractRollout.copy();
+        rollout.play(EmpireFixture.RADETZKY_PLAYER_ID, random, SIMULATION_DEPTH, Long.MAX_VALUE, fixture.getExecutionTime());
+        return rollout.evaluate(EmpireFixture.RADETZKY_PLAYER_ID, EmpireFixture.RADETZKY_PLAYER_ID);
+    }
+
+    // building a new node, which rates all actions of the position
+    @Benchmark
+    public GameNode createNode() {
+        return new GameNode(context, EmpireFixture.RADETZKY_PLAYER_ID);
+    }
+}
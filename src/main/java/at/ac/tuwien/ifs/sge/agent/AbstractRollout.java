@@ -0,0 +1,295 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Random;
+
+import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
+import at.ac.tuwien.ifs.sge.game.empire.model.map.EmpireCity;
+
+// Rollouts on a summary of the game instead of the engine. Every player is reduced to units per type, cities, the
+// discovered part of the map and what it currently produces, all in a few primitive arrays. The rules are only a coarse
+// approximation of Empire, but a ply costs a few dozen arithmetic operations instead of a full engine step.
+public class AbstractRollout {
+    private static final int TYPES = UnitStats.hpOfType.length; // index 0 is unused, because type id starts at 1
+    private static final int EXPLORE = 0, CAPTURE = 1, ATTACK = 2, STANCES = 3;
+    private static final float CAPTURE_RATE = .05f; // chance per second and tile per second of the units to take a free city
+    private static final float IDLE_DISCOVERY = .3f; // units that do not explore still discover a little on their way
+
+    private final int numberOfPlayers;
+    private final float ratioPerTile;
+    private final float[] units; // [player * TYPES + type], fractional so that damage can be spread over all types
+    private final float[] discoveredRatio;
+    private final int[] cities;
+    private int freeCities;
+    private final int[] producedType;
+    private final float[] productionProgress; // in ms
+    private final int[] stance; // what the units of a player are busy with
+
+    private AbstractRollout(int numberOfPlayers, int tilesCount) {
+        this.numberOfPlayers = numberOfPlayers;
+        this.ratioPerTile = 1f / tilesCount;
+        this.units = new float[numberOfPlayers * TYPES];
+        this.discoveredRatio = new float[numberOfPlayers];
+        this.cities = new int[numberOfPlayers];
+        this.producedType = new int[numberOfPlayers];
+        this.productionProgress = new float[numberOfPlayers];
+        this.stance = new int[numberOfPlayers];
+    }
+
+    private AbstractRollout(AbstractRollout other) {
+        this.numberOfPlayers = other.numberOfPlayers;
+        this.ratioPerTile = other.ratioPerTile;
+        this.units = other.units.clone();
+        this.discoveredRatio = other.discoveredRatio.clone();
+        this.cities = other.cities.clone();
+        this.freeCities = other.freeCities;
+        this.producedType = other.producedType.clone();
+        this.productionProgress = other.productionProgress.clone();
+        this.stance = other.stance.clone();
+    }
+
+    public AbstractRollout copy() {
+        return new AbstractRollout(this);
+    }
+
+    public static AbstractRollout of(SimulationState state) {
+        var game = state.game;
+        var size = game.getBoard().getMapSize();
+        var numberOfPlayers = state.getNumberOfPlayers();
+        var rollout = new AbstractRollout(numberOfPlayers, size.getWidth() * size.getHeight());
+        for (int player = 0; player < numberOfPlayers; player++) {
+            var playerUnits = game.getUnitsByPlayer(player);
+            for (int i = 0; i < playerUnits.size(); i++) {
+                rollout.units[player * TYPES + playerUnits.get(i).getUnitTypeId()]++;
+            }
+            for (int type = 1; type < TYPES; type++) {
+                rollout.units[player * TYPES + type] += state.unitHeuristics[player].getEstimatedNumberOfUnits(type);
+            }
+            rollout.discoveredRatio[player] = state.discoveredBoards[player].getDiscoveredBoardRatio();
+            rollout.producedType[player] = rollout.getBestUnitType(player);
+        }
+        for (EmpireCity city : game.getCitiesByPosition().values()) {
+            var occupants = city.getOccupants();
+            if (occupants.isEmpty()) rollout.freeCities++;
+            else rollout.cities[occupants.get(0).getPlayerId()]++;
+        }
+        return rollout;
+    }
+
+    // Returns the number of plies played
+    public int play(int playerId, Random random, int simulationDepth, long timeOfNextDecision, int executionTime) {
+        var event = new RolloutEvent();
+        event.begin();
+        var seconds = executionTime / 1e3f;
+        var depth = 0;
+        var plies = 0;
+        var currentPlayer = playerId;
+        while (!isGameOver() && depth++ <= simulationDepth && System.currentTimeMillis() < timeOfNextDecision) {
+            chooseAction(currentPlayer, random);
+            advance(seconds, random);
+            currentPlayer = (currentPlayer + 1) % numberOfPlayers;
+            plies++;
+        }
+        if (event.shouldCommit()) event.finish(plies, RolloutEvent.getTermination(isGameOver(), plies, simulationDepth), true);
+        return plies;
+    }
+
+    // Mirrors EventHeuristics.selectBestRandomly: sometimes nothing changes, otherwise an option is drawn by its heuristic
+    private void chooseAction(int player, Random random) {
+        var options = STANCES + TYPES - 1;
+        if (random.nextInt(options + 1) == 0) return;
+        var ratio = discoveredRatio[player];
+        var unitCount = getUnitCount(player);
+        var exploreWeight = unitCount > 0 ? (1f - ratio) * getDiscoveryCapacity(player) : 0;
+        var captureWeight = unitCount > 0 && freeCities > 0 ? 1000f : 0; // occupying free cities is rated highest, like in calculateTotalHeuristic
+        var attackWeight = unitCount > 0 && hasVisibleEnemies(player) ? getDamageCapacity(player) * ratio : 0;
+        var productionWeightSum = 0f;
+        if (cities[player] > 0) {
+            for (int type = 1; type < TYPES; type++) {
+                productionWeightSum += Math.max(0, UnitHeuristics.calculateHeuristicFromUnitType(type, ratio));
+            }
+        }
+        var sum = exploreWeight + captureWeight + attackWeight + productionWeightSum;
+        if (sum <= 0) return;
+        var offset = random.nextFloat() * sum;
+        if ((offset -= exploreWeight) < 0) {
+            stance[player] = EXPLORE;
+        } else if ((offset -= captureWeight) < 0) {
+            stance[player] = CAPTURE;
+        } else if ((offset -= attackWeight) < 0) {
+            stance[player] = ATTACK;
+        } else {
+            for (int type = 1; type < TYPES; type++) {
+                offset -= Math.max(0, UnitHeuristics.calculateHeuristicFromUnitType(type, ratio));
+                if (offset < 0 || type == TYPES - 1) {
+                    if (producedType[player] != type) productionProgress[player] = 0; // switching aborts the current production
+                    producedType[player] = type;
+                    break;
+                }
+            }
+        }
+    }
+
+    private void advance(float seconds, Random random) {
+        for (int player = 0; player < numberOfPlayers; player++) {
+            // every occupied city produces
+            if (cities[player] > 0) {
+                var type = producedType[player];
+                var cost = UnitStats.costOfType[type] * 1000f;
+                productionProgress[player] += cities[player] * seconds * 1000f;
+                while (productionProgress[player] >= cost) {
+                    productionProgress[player] -= cost;
+                    units[player * TYPES + type]++;
+                }
+            }
+
+            var discovery = getDiscoveryCapacity(player) * seconds * ratioPerTile;
+            if (stance[player] != EXPLORE) discovery *= IDLE_DISCOVERY;
+            discoveredRatio[player] = Math.min(1f, discoveredRatio[player] + (1f - discoveredRatio[player]) * discovery);
+
+            if (stance[player] == CAPTURE && freeCities > 0) {
+                var captureChance = getSpeed(player) * seconds * CAPTURE_RATE;
+                if (random.nextFloat() < captureChance) {
+                    freeCities--;
+                    cities[player]++;
+                }
+            }
+        }
+
+        for (int player = 0; player < numberOfPlayers; player++) {
+            if (stance[player] != ATTACK) continue;
+            var target = getStrongestEnemy(player);
+            if (target < 0) continue;
+            // the enemy first has to be found, the more of the map is known the more of the damage hits
+            damage(target, getDamageCapacity(player) * seconds * discoveredRatio[player]);
+            if (getUnitCount(target) < .5f && cities[target] > 0 && random.nextFloat() < getSpeed(player) * seconds * CAPTURE_RATE) {
+                cities[target]--;
+                cities[player]++;
+            }
+        }
+    }
+
+    // Spreads the damage over all types by their share of the hit points
+    private void damage(int player, float damage) {
+        var hp = 0f;
+        for (int type = 1; type < TYPES; type++) {
+            hp += units[player * TYPES + type] * UnitStats.hpOfType[type];
+        }
+        if (hp <= 0) return;
+        var survivingRatio = Math.max(0f, 1f - damage / hp);
+        for (int type = 1; type < TYPES; type++) {
+            units[player * TYPES + type] *= survivingRatio;
+        }
+    }
+
+    private boolean isGameOver() {
+        var playersLeft = 0;
+        for (int player = 0; player < numberOfPlayers; player++) {
+            if (!hasLost(player)) playersLeft++;
+        }
+        return playersLeft <= 1;
+    }
+
+    private boolean hasLost(int player) {
+        return cities[player] == 0 && getUnitCount(player) < .5f;
+    }
+
+    // Same rules as Rollout.evaluate, with the post simulation heuristic of the abstract state
+    public int evaluate(int playerId, int radetzkyPlayerId) {
+        int bestPlayerId = 0;
+        float myPerformance = Float.NEGATIVE_INFINITY;
+        float bestPerformance = getPerformance(bestPlayerId);
+        if (bestPlayerId == playerId) {
+            myPerformance = bestPerformance;
+        }
+        for (int i = 1; i < numberOfPlayers; i++) {
+            var current = getPerformance(i);
+            if (i == playerId) {
+                myPerformance = current;
+            }
+            if (current > bestPerformance) {
+                bestPlayerId = i;
+                bestPerformance = current;
+            }
+        }
+        if (myPerformance == bestPerformance && playerId == radetzkyPlayerId) return radetzkyPlayerId;
+        return bestPlayerId;
+    }
+
+    private float getPerformance(int player) {
+        var ratio = discoveredRatio[player];
+        var performance = ratio;
+        if (hasLost(player)) return performance;
+        if (isGameOver()) performance += 1e6;
+        for (int type = 1; type < TYPES; type++) {
+            performance += UnitHeuristics.calculateHeuristicFromUnitType(type, ratio) * units[player * TYPES + type];
+        }
+        if (cities[player] > 0) {
+            var type = producedType[player];
+            performance += UnitHeuristics.calculateHeuristicFromUnitType(type, ratio) * productionProgress[player] / (UnitStats.costOfType[type] * 1000f);
+        }
+        return performance;
+    }
+
+    private int getBestUnitType(int player) {
+        var bestType = 1;
+        var bestHeuristic = UnitHeuristics.calculateHeuristicFromUnitType(bestType, discoveredRatio[player]);
+        for (int type = 2; type < TYPES; type++) {
+            var current = UnitHeuristics.calculateHeuristicFromUnitType(type, discoveredRatio[player]);
+            if (current > bestHeuristic) {
+                bestHeuristic = current;
+                bestType = type;
+            }
+        }
+        return bestType;
+    }
+
+    private int getStrongestEnemy(int player) {
+        var strongest = -1;
+        var strongestUnits = 0f;
+        for (int other = 0; other < numberOfPlayers; other++) {
+            if (other == player || hasLost(other)) continue;
+            var otherUnits = getUnitCount(other) + cities[other];
+            if (otherUnits > strongestUnits) {
+                strongestUnits = otherUnits;
+                strongest = other;
+            }
+        }
+        return strongest;
+    }
+
+    private boolean hasVisibleEnemies(int player) {
+        return getStrongestEnemy(player) >= 0;
+    }
+
+    private float getUnitCount(int player) {
+        var count = 0f;
+        for (int type = 1; type < TYPES; type++) {
+            count += units[player * TYPES + type];
+        }
+        return count;
+    }
+
+    private float getDiscoveryCapacity(int player) {
+        var capacity = 0f;
+        for (int type = 1; type < TYPES; type++) {
+            capacity += units[player * TYPES + type] * UnitHeuristics.getTilesDiscoveryCapacity(type);
+        }
+        return capacity;
+    }
+
+    private float getDamageCapacity(int player) {
+        var capacity = 0f;
+        for (int type = 1; type < TYPES; type++) {
+            capacity += units[player * TYPES + type] * UnitHeuristics.getDamageCapacity(type);
+        }
+        return capacity;
+    }
+
+    private float getSpeed(int player) {
+        var speed = 0f;
+        for (int type = 1; type < TYPES; type++) {
+            speed += units[player * TYPES + type] * UnitStats.speedOfType[type];
+        }
+        return speed;
+    }
+}
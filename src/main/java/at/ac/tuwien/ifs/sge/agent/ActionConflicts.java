@@ -0,0 +1,54 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.CombatStartOrder;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.MovementStartOrder;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.ProductionStartOrder;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.stop.CombatStopOrder;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.stop.MovementStopOrder;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.stop.ProductionStopOrder;
+
+// Which orders can be sent together. Orders conflict if they are given to the same unit or city, or if they send two
+// units to the same tile, only the first one to arrive would occupy a free city there
+public class ActionConflicts {
+    // The unit or city an order is given to. There is no actor for doing nothing, unknown orders are their own actor
+    public static Object getActor(EmpireEvent event) {
+        if (event == null) return null;
+        if (event instanceof MovementStartOrder movementStartOrder) return movementStartOrder.getUnitId();
+        if (event instanceof MovementStopOrder movementStopOrder) return movementStopOrder.getUnitId();
+        if (event instanceof CombatStartOrder combatStartOrder) return combatStartOrder.getAttackerId();
+        if (event instanceof CombatStopOrder combatStopOrder) return combatStopOrder.getUnitId();
+        if (event instanceof ProductionStartOrder productionStartOrder) return productionStartOrder.getCityPosition();
+        if (event instanceof ProductionStopOrder productionStopOrder) return productionStopOrder.getCityPosition();
+        return event;
+    }
+
+    public static boolean conflict(EmpireEvent a, EmpireEvent b) {
+        if (a == null || b == null) return false;
+        if (getActor(a).equals(getActor(b))) return true;
+        return a instanceof MovementStartOrder movementA && b instanceof MovementStartOrder movementB && movementA.getDestination().equals(movementB.getDestination());
+    }
+
+    // Takes the candidates in order and skips the ones that conflict with a taken one or do nothing, until maxSize are
+    // taken. A candidate is only taken if accept returns true for it, accept is called in order, only for the candidates
+    // that do not conflict with a taken one
+    public static <T> List<T> selectNonConflicting(List<T> candidates, Function<T, EmpireEvent> getAction, Predicate<T> accept, int maxSize) {
+        var selected = new ArrayList<T>(Math.min(maxSize, candidates.size()));
+        for (int i = 0; i < candidates.size() && selected.size() < maxSize; i++) {
+            var candidate = candidates.get(i);
+            var action = getAction.apply(candidate);
+            if (action == null) continue;
+            var conflicting = false;
+            for (int j = 0; j < selected.size() && !conflicting; j++) {
+                conflicting = conflict(action, getAction.apply(selected.get(j)));
+            }
+            if (!conflicting && accept.test(candidate)) selected.add(candidate);
+        }
+        return selected;
+    }
+}
@@ -0,0 +1,52 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+
+// Reusable weighted sampling buffer, one per thread so rollouts do not allocate in steady state
+public class ActionSampler {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ThreadLocal<ActionSampler> SAMPLERS = ThreadLocal.withInitial(ActionSampler::new);
+
+    private EmpireEvent[] events = new EmpireEvent[INITIAL_CAPACITY];
+    private float[] weights = new float[INITIAL_CAPACITY];
+    private int size = 0;
+    private double weightSum = 0;
+
+    public static ActionSampler get() {
+        return SAMPLERS.get();
+    }
+
+    public void clear() {
+        Arrays.fill(events, 0, size, null);
+        size = 0;
+        weightSum = 0;
+    }
+
+    public void add(EmpireEvent event, float weight) {
+        if (size == events.length) grow();
+        events[size] = event;
+        weights[size] = weight;
+        size++;
+        weightSum += weight;
+    }
+
+    // linear cumulative scan, every set of actions is only drawn from once
+    public EmpireEvent sample(Random random) {
+        var randomOffset = random.nextDouble() * weightSum;
+        var offset = 0.0;
+        for (int i = 0; i < size; i++) {
+            offset += weights[i];
+            if (randomOffset < offset) return events[i];
+        }
+        return null;
+    }
+
+    private void grow() {
+        var capacity = events.length * 2;
+        events = Arrays.copyOf(events, capacity);
+        weights = Arrays.copyOf(weights, capacity);
+    }
+}
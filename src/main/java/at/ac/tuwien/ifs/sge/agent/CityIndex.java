@@ -0,0 +1,113 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Collection;
+import java.util.function.Predicate;
+
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+import at.ac.tuwien.ifs.sge.game.empire.map.Position;
+
+// Uniform grid over the positions of the known cities. Cities never move, so the grid is shared by all copies of the
+// game that know the same cities, see SimulationState.getCityIndex. Occupation changes all the time during
+// simulations, it is looked up in the game that is queried, so the index never goes stale.
+public class CityIndex {
+    private final int size;
+    private final int minX, minY;
+    private final int cellSize;
+    private final int columns, rows;
+    private final int[] cellStarts; // the cities of cell i are cityPositions[cellStarts[i]] until cityPositions[cellStarts[i + 1]]
+    private final Position[] cityPositions;
+
+    private CityIndex(Collection<Position> positions) {
+        size = positions.size();
+        int minX = Integer.MAX_VALUE, minY = Integer.MAX_VALUE, maxX = Integer.MIN_VALUE, maxY = Integer.MIN_VALUE;
+        for (Position position : positions) {
+            minX = Math.min(minX, position.getX());
+            minY = Math.min(minY, position.getY());
+            maxX = Math.max(maxX, position.getX());
+            maxY = Math.max(maxY, position.getY());
+        }
+        if (size == 0) minX = minY = maxX = maxY = 0;
+        this.minX = minX;
+        this.minY = minY;
+        var width = maxX - minX + 1;
+        var height = maxY - minY + 1;
+        // about one city per cell
+        cellSize = Math.max(1, (int) Math.ceil(Math.sqrt((double) width * height / Math.max(1, size))));
+        columns = (width + cellSize - 1) / cellSize;
+        rows = (height + cellSize - 1) / cellSize;
+
+        cellStarts = new int[columns * rows + 1];
+        for (Position position : positions) {
+            cellStarts[cellOf(position.getX(), position.getY()) + 1]++;
+        }
+        for (int i = 1; i < cellStarts.length; i++) {
+            cellStarts[i] += cellStarts[i - 1];
+        }
+        cityPositions = new Position[size];
+        var next = cellStarts.clone();
+        for (Position position : positions) {
+            cityPositions[next[cellOf(position.getX(), position.getY())]++] = position;
+        }
+    }
+
+    public static CityIndex of(Empire gameState) {
+        return of(gameState.getCitiesByPosition().keySet());
+    }
+
+    static CityIndex of(Collection<Position> cityPositions) {
+        return new CityIndex(cityPositions);
+    }
+
+    // Only valid for games that descend from the game the index was built for, in them cities are only ever
+    // discovered and never lost, so the number of known cities tells if a city is missing
+    public boolean isComplete(Empire gameState) {
+        return size == gameState.getCitiesByPosition().size();
+    }
+
+    // Returns the position of the closest city without occupants, or null if all cities are occupied
+    public Position getClosestUnoccupiedCity(Empire gameState, Position from) {
+        return getClosestCity(from, position -> {
+            var city = gameState.getCity(position);
+            return city != null && city.getOccupants().isEmpty();
+        });
+    }
+
+    // Returns the position of the closest city that is accepted, or null if there is none
+    Position getClosestCity(Position from, Predicate<Position> accept) {
+        if (size == 0) return null;
+        var column = clamp((from.getX() - minX) / cellSize, columns);
+        var row = clamp((from.getY() - minY) / cellSize, rows);
+        Position closest = null;
+        var closestDistance = Float.MAX_VALUE;
+        var maxRing = Math.max(columns, rows);
+        for (int ring = 0; ring <= maxRing; ring++) {
+            // every city in this ring is at least (ring - 1) cells away
+            if (closest != null && (ring - 1) * cellSize > closestDistance) break;
+            for (int y = row - ring; y <= row + ring; y++) {
+                if (y < 0 || y >= rows) continue;
+                var onEdge = y == row - ring || y == row + ring;
+                var step = onEdge ? 1 : Math.max(1, 2 * ring);
+                for (int x = column - ring; x <= column + ring; x += step) {
+                    if (x < 0 || x >= columns) continue;
+                    var cell = y * columns + x;
+                    for (int i = cellStarts[cell]; i < cellStarts[cell + 1]; i++) {
+                        var position = cityPositions[i];
+                        var distance = PositionExtensions.GetDistance(from, position);
+                        if (distance >= closestDistance || !accept.test(position)) continue;
+                        closest = position;
+                        closestDistance = distance;
+                    }
+                }
+            }
+        }
+        return closest;
+    }
+
+    private int cellOf(int x, int y) {
+        return ((y - minY) / cellSize) * columns + (x - minX) / cellSize;
+    }
+
+    private static int clamp(int value, int length) {
+        return Math.max(0, Math.min(length - 1, value));
+    }
+}
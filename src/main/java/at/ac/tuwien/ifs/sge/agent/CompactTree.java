@@ -0,0 +1,525 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+
+import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+
+// Search tree that keeps its nodes in parallel primitive arrays instead of one GameNode object per node.
+// A node is an index, the root is 0 and the children of a node are linked through firstChild and nextSibling.
+// The unexplored actions of all nodes share one pool, every node owns a range of it. Popped actions are moved
+// behind the unexplored part of the range, they are dropped when the pool is full, see compactPool.
+// Searches the same way as GameNode, without virtual losses, so it is only used by one thread.
+public class CompactTree implements SearchTree {
+    private static final int NONE = -1;
+    private static final int ROOT = 0;
+    private static final int INITIAL_CAPACITY = 256;
+    private final SearchContext context;
+    private final int numberOfPlayers;
+    private final int radetzkyPlayerId;
+    private final int executionTime;
+
+    private int size;
+    private int[] parents;
+    private int[] firstChildren;
+    private int[] lastChildren;
+    private int[] nextSiblings;
+    private int[] playerIds;
+    private int[] responsiblePlayerIds;
+    private int[] visits;
+    private int[] wins;
+    private float[] heuristics; // numberOfPlayers per node
+    private EmpireEvent[] responsibleActions;
+    private int[] unexploredStarts;
+    private int[] unexploredCounts;
+
+    private int poolSize;
+    private EmpireEvent[] poolActions;
+    private float[] poolHeuristics;
+
+    // states of the most recently created nodes, evicted in insertion order
+    private final int maxStates;
+    private SimulationState[] states;
+    private final int[] cachedNodes;
+    private int cacheCursor;
+
+    public CompactTree(SearchContext context, int maxStates) {
+        this.context = context;
+        this.numberOfPlayers = context.numberOfPlayers;
+        this.radetzkyPlayerId = context.radetzkyPlayerId;
+        this.executionTime = context.executionTime;
+        this.maxStates = maxStates;
+        this.cachedNodes = new int[Math.max(0, maxStates)];
+        Arrays.fill(cachedNodes, NONE);
+        allocate(INITIAL_CAPACITY);
+        createNode(NONE, radetzkyPlayerId, radetzkyPlayerId, null, 0);
+    }
+
+    // Creates a tree in the same position as the given tree, whose root offers the same action instances
+    public CompactTree(SearchContext context, int maxStates, CompactTree sameTree) {
+        this.context = context;
+        this.numberOfPlayers = context.numberOfPlayers;
+        this.radetzkyPlayerId = context.radetzkyPlayerId;
+        this.executionTime = context.executionTime;
+        this.maxStates = maxStates;
+        this.cachedNodes = new int[Math.max(0, maxStates)];
+        Arrays.fill(cachedNodes, NONE);
+        allocate(INITIAL_CAPACITY);
+        var root = createBareNode(NONE, radetzkyPlayerId, radetzkyPlayerId, null);
+        System.arraycopy(sameTree.heuristics, ROOT * numberOfPlayers, heuristics, root * numberOfPlayers, numberOfPlayers);
+        var start = sameTree.unexploredStarts[ROOT];
+        var count = sameTree.unexploredCounts[ROOT];
+        for (int i = start; i < start + count; i++) {
+            appendUnexploredAction(root, sameTree.poolActions[i], sameTree.poolHeuristics[i]);
+        }
+    }
+
+    @Override
+    public SearchNode getRoot() {
+        return new Node(ROOT);
+    }
+
+    @Override
+    public void iterate(Random random, int simulationDepth, long timeOfNextDecision) {
+        var telemetry = context.telemetry;
+        var start = telemetry == null ? 0 : System.nanoTime();
+        var node = select(Radetzky.DEFAULT_EXPLOITATION_CONSTANT);
+        if (telemetry != null) start = telemetry.record(SearchTelemetry.Phase.SELECTION, start);
+        expand(node);
+        if (telemetry != null) telemetry.record(SearchTelemetry.Phase.EXPANSION, start);
+        simulate(node, random, simulationDepth, timeOfNextDecision);
+    }
+
+    private void allocate(int capacity) {
+        parents = new int[capacity];
+        firstChildren = new int[capacity];
+        lastChildren = new int[capacity];
+        nextSiblings = new int[capacity];
+        playerIds = new int[capacity];
+        responsiblePlayerIds = new int[capacity];
+        visits = new int[capacity];
+        wins = new int[capacity];
+        heuristics = new float[capacity * numberOfPlayers];
+        responsibleActions = new EmpireEvent[capacity];
+        unexploredStarts = new int[capacity];
+        unexploredCounts = new int[capacity];
+        states = new SimulationState[capacity];
+        poolActions = new EmpireEvent[capacity * 4];
+        poolHeuristics = new float[capacity * 4];
+    }
+
+    private void ensureNodeCapacity(int capacity) {
+        if (capacity <= parents.length) return;
+        var newCapacity = Math.max(capacity, parents.length * 2);
+        parents = Arrays.copyOf(parents, newCapacity);
+        firstChildren = Arrays.copyOf(firstChildren, newCapacity);
+        lastChildren = Arrays.copyOf(lastChildren, newCapacity);
+        nextSiblings = Arrays.copyOf(nextSiblings, newCapacity);
+        playerIds = Arrays.copyOf(playerIds, newCapacity);
+        responsiblePlayerIds = Arrays.copyOf(responsiblePlayerIds, newCapacity);
+        visits = Arrays.copyOf(visits, newCapacity);
+        wins = Arrays.copyOf(wins, newCapacity);
+        heuristics = Arrays.copyOf(heuristics, newCapacity * numberOfPlayers);
+        responsibleActions = Arrays.copyOf(responsibleActions, newCapacity);
+        unexploredStarts = Arrays.copyOf(unexploredStarts, newCapacity);
+        unexploredCounts = Arrays.copyOf(unexploredCounts, newCapacity);
+        states = Arrays.copyOf(states, newCapacity);
+    }
+
+    private void appendUnexploredAction(int node, EmpireEvent action, float heuristic) {
+        if (poolSize == poolActions.length) {
+            compactPool();
+            // grow only if the unexplored actions fill most of the pool, so that it is not compacted all the time
+            if (poolSize * 2 > poolActions.length) {
+                poolActions = Arrays.copyOf(poolActions, poolActions.length * 2);
+                poolHeuristics = Arrays.copyOf(poolHeuristics, poolActions.length);
+            }
+        }
+        poolActions[poolSize] = action;
+        poolHeuristics[poolSize] = heuristic;
+        poolSize++;
+        unexploredCounts[node]++;
+    }
+
+    // A node with statistics, but without evaluated state and actions
+    private int createBareNode(int parent, int playerId, int responsiblePlayerId, EmpireEvent responsibleAction) {
+        ensureNodeCapacity(size + 1);
+        var node = size++;
+        parents[node] = parent;
+        firstChildren[node] = NONE;
+        lastChildren[node] = NONE;
+        nextSiblings[node] = NONE;
+        playerIds[node] = playerId;
+        responsiblePlayerIds[node] = responsiblePlayerId;
+        responsibleActions[node] = responsibleAction;
+        unexploredStarts[node] = poolSize;
+        unexploredCounts[node] = 0;
+        if (parent != NONE) {
+            if (lastChildren[parent] == NONE) firstChildren[parent] = node;
+            else nextSiblings[lastChildren[parent]] = node;
+            lastChildren[parent] = node;
+        }
+        context.nodeBudget.onNodeCreated();
+        return node;
+    }
+
+    private int createNode(int parent, int playerId, int responsiblePlayerId, EmpireEvent responsibleAction, float actionHeuristic) {
+        var node = createBareNode(parent, playerId, responsiblePlayerId, responsibleAction);
+        var offset = node * numberOfPlayers;
+        SimulationState state;
+        try {
+            state = materializeState(node);
+        } catch (ActionException e) {
+            e.printStackTrace();
+            heuristics[offset + responsiblePlayerId] = Float.NEGATIVE_INFINITY;
+            return node;
+        }
+        var actions = EventHeuristics.fromGameState(state.game, state.getCityIndex(), playerId, state.discoveredBoards[playerId]);
+        state.revert();
+        if (!actions.isEmpty()) {
+            var best = Float.NEGATIVE_INFINITY;
+            for (int i = 0; i < actions.size(); i++) {
+                var action = actions.get(i);
+                appendUnexploredAction(node, action.event, action.heuristic);
+                if (action.heuristic > best) best = action.heuristic;
+            }
+            heuristics[offset + playerId] = best;
+        }
+        // the responsible action was scored by the parent, in the state it was chosen in
+        heuristics[offset + responsiblePlayerId] = actionHeuristic;
+        if (parent != NONE) setHeuristic(parent, actionHeuristic, responsiblePlayerId);
+        return node;
+    }
+
+    private void setHeuristic(int node, float childHeuristic, int playerId) {
+        for (; node != NONE; node = parents[node]) {
+            var index = node * numberOfPlayers + playerId;
+            if (childHeuristic <= heuristics[index]) return;
+            heuristics[index] = childHeuristic;
+        }
+    }
+
+    // Builds the state of a new node once and caches it. The returned state must only be read, and reverted once it is
+    // no longer needed
+    private SimulationState materializeState(int node) throws ActionException {
+        if (node == ROOT) return context.rootState;
+        var state = getGameState(parents[node]);
+        step(node, state);
+        cacheState(node, state);
+        return state;
+    }
+
+    // Returns a private copy of the state of the node, replayed from the nearest cached ancestor. Without one the walk
+    // starts at the root on the heuristics and boards of this thread, the state has to be reverted afterwards
+    private SimulationState getGameState(int node) throws ActionException {
+        var event = new StateReplayEvent();
+        event.begin();
+        var state = replayState(node, event);
+        if (event.shouldCommit()) event.finish(getDepth(node));
+        return state;
+    }
+
+    private SimulationState replayState(int node, StateReplayEvent event) throws ActionException {
+        if (node == ROOT) return context.beginWalk();
+        var cached = states[node];
+        if (cached != null) return cached.copy();
+        var state = replayState(parents[node], event);
+        step(node, state);
+        event.steps++;
+        return state;
+    }
+
+    private int getDepth(int node) {
+        var depth = 0;
+        for (node = parents[node]; node != NONE; node = parents[node]) {
+            depth++;
+        }
+        return depth;
+    }
+
+    // Reverts the state if the step fails, nobody else gets hold of it
+    private void step(int node, SimulationState state) throws ActionException {
+        var action = responsibleActions[node];
+        try {
+            if (action != null) state.apply(responsiblePlayerIds[node], action);
+            state.advance(executionTime);
+        } catch (ActionException e) {
+            state.revert();
+            throw e;
+        }
+    }
+
+    private void cacheState(int node, SimulationState state) {
+        if (maxStates <= 0) return;
+        var evicted = cachedNodes[cacheCursor];
+        if (evicted != NONE) states[evicted] = null;
+        cachedNodes[cacheCursor] = node;
+        states[node] = state.detach();
+        cacheCursor = (cacheCursor + 1) % maxStates;
+    }
+
+    private boolean isLeaf(int node) {
+        return firstChildren[node] == NONE;
+    }
+
+    private float heuristic(int node, float exploitationConstant) {
+        return upperConfidenceBound(node, exploitationConstant) + heuristics[node * numberOfPlayers + responsiblePlayerIds[node]];
+    }
+
+    private float upperConfidenceBound(int node, float exploitationConstant) {
+        float visits = this.visits[node];
+        if (visits == 0) visits = 1;
+
+        float N;
+        var parent = parents[node];
+        if (parent != NONE) N = this.visits[parent];
+        else N = visits;
+
+        return (wins[node] / visits) + exploitationConstant * (float) Math.sqrt(2 * Math.log(N) / visits);
+    }
+
+    private int getBestChildByHeuristics(int node, float exploitationConstant) {
+        var best = firstChildren[node];
+        var bestHeuristic = heuristic(best, exploitationConstant);
+        for (int child = nextSiblings[best]; child != NONE; child = nextSiblings[child]) {
+            var currentHeuristic = heuristic(child, exploitationConstant);
+            if (currentHeuristic > bestHeuristic) {
+                best = child;
+                bestHeuristic = currentHeuristic;
+            }
+        }
+        return best;
+    }
+
+    private int select(float exploitationConstant) {
+        var node = ROOT;
+        while (!isLeaf(node)) {
+            var bestChild = getBestChildByHeuristics(node, exploitationConstant);
+            // if it has a better heuristic value keep exploring the node even though it is no leaf
+            if (unexploredCounts[bestChild] > 0 && heuristic(bestChild, exploitationConstant) < heuristic(node, exploitationConstant)) return node;
+            node = bestChild;
+        }
+        return node;
+    }
+
+    // Returns the pool index of the best unexplored action of the node
+    private int popUnexploredAction(int node) {
+        var start = unexploredStarts[node];
+        var last = start + unexploredCounts[node] - 1;
+        var bestIndex = start;
+        for (int i = start + 1; i <= last; i++) {
+            if (poolHeuristics[i] > poolHeuristics[bestIndex]) bestIndex = i;
+        }
+        swapPoolEntries(bestIndex, last);
+        unexploredCounts[node]--;
+        return last;
+    }
+
+    // Moves the unexplored actions of all nodes to the front of the pool and drops the popped ones. The ranges are in
+    // the order of the nodes, a node appends its actions right after it is created
+    private void compactPool() {
+        var next = 0;
+        for (int node = 0; node < size; node++) {
+            var start = unexploredStarts[node];
+            var count = unexploredCounts[node];
+            if (start != next) {
+                System.arraycopy(poolActions, start, poolActions, next, count);
+                System.arraycopy(poolHeuristics, start, poolHeuristics, next, count);
+            }
+            unexploredStarts[node] = next;
+            next += count;
+        }
+        Arrays.fill(poolActions, next, poolSize, null);
+        poolSize = next;
+    }
+
+    private void swapPoolEntries(int a, int b) {
+        var action = poolActions[a];
+        poolActions[a] = poolActions[b];
+        poolActions[b] = action;
+        var heuristic = poolHeuristics[a];
+        poolHeuristics[a] = poolHeuristics[b];
+        poolHeuristics[b] = heuristic;
+    }
+
+    private void expand(int node) {
+        var playerId = playerIds[node];
+        var nextPlayerId = (playerId + 1) % numberOfPlayers;
+        if (node == ROOT) {
+            // the root is always expanded, other nodes only while the node budget lasts
+            if (unexploredCounts[ROOT] == 0) return;
+            // pop from the front before the child is created, creating it may compact the pool
+            while (unexploredCounts[ROOT] > 0) {
+                var i = unexploredStarts[ROOT]++;
+                unexploredCounts[ROOT]--;
+                createNode(ROOT, nextPlayerId, playerId, poolActions[i], poolHeuristics[i]);
+            }
+            createNode(ROOT, nextPlayerId, playerId, null, 0);
+        } else if (context.nodeBudget.isExhausted()) {
+            return;
+        } else if (isLeaf(node)) {
+            createNode(node, nextPlayerId, playerId, null, 0);
+        } else if (unexploredCounts[node] > 0) {
+            var action = popUnexploredAction(node);
+            createNode(node, nextPlayerId, playerId, poolActions[action], poolHeuristics[action]);
+        }
+    }
+
+    private void simulate(int node, Random random, int simulationDepth, long timeOfNextDecision) {
+        var telemetry = context.telemetry;
+        var start = telemetry == null ? 0 : System.nanoTime();
+        SimulationState state;
+        try {
+            state = getGameState(node);
+        } catch (ActionException e) {
+            return;
+        }
+        if (telemetry != null) telemetry.record(SearchTelemetry.Phase.REPLAY, start);
+        Rollout.Results results;
+        try {
+            results = Rollout.simulate(context, state, playerIds[node], random, simulationDepth, timeOfNextDecision);
+        } finally {
+            state.revert();
+        }
+        if (results.visits > 0) backPropagate(node, results.visits, results.wins);
+    }
+
+    private void backPropagate(int node, int visits, int wins) {
+        for (; node != NONE; node = parents[node]) {
+            this.visits[node] += visits;
+            this.wins[node] += wins;
+        }
+    }
+
+    // Adds the visits and wins of the root children of another tree, that was created with the same action instances
+    public void mergeRootStatistics(CompactTree other) {
+        visits[ROOT] += other.visits[ROOT];
+        wins[ROOT] += other.wins[ROOT];
+        for (int otherChild = other.firstChildren[ROOT]; otherChild != NONE; otherChild = other.nextSiblings[otherChild]) {
+            var action = other.responsibleActions[otherChild];
+            var child = getChild(ROOT, action);
+            if (child == NONE) {
+                child = createBareNode(ROOT, other.playerIds[otherChild], other.responsiblePlayerIds[otherChild], action);
+            }
+            visits[child] += other.visits[otherChild];
+            wins[child] += other.wins[otherChild];
+        }
+    }
+
+    private int getChild(int node, EmpireEvent action) {
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            if (responsibleActions[child] == action) return child;
+        }
+        return NONE;
+    }
+
+    private int getMostVisitedChild(int node) {
+        if (isLeaf(node)) return node;
+        var mostVisited = firstChildren[node];
+        for (int child = nextSiblings[mostVisited]; child != NONE; child = nextSiblings[child]) {
+            if (visits[child] > visits[mostVisited]) mostVisited = child;
+        }
+        return mostVisited;
+    }
+
+    private int getVisitLeadOfMostVisitedChild(int node) {
+        var most = 0;
+        var second = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            var current = visits[child];
+            if (current > most) {
+                second = most;
+                most = current;
+            } else if (current > second) {
+                second = current;
+            }
+        }
+        return most - second;
+    }
+
+    private int getNumberOfChildren(int node) {
+        var count = 0;
+        for (int child = firstChildren[node]; child != NONE; child = nextSiblings[child]) {
+            count++;
+        }
+        return count;
+    }
+
+    // Parents are always created before their children, so one pass in index order knows the depth of every parent
+    private int getMaxDepth(int node) {
+        var depths = new int[size];
+        var maxDepth = 0;
+        for (int i = node + 1; i < size; i++) {
+            var parent = parents[i];
+            if (parent < node) continue;
+            if (parent != node && depths[parent] == 0) continue; // not in the subtree of the node
+            depths[i] = depths[parent] + 1;
+            maxDepth = Math.max(maxDepth, depths[i]);
+        }
+        return maxDepth;
+    }
+
+    private class Node implements SearchNode {
+        private final int index;
+
+        private Node(int index) {
+            this.index = index;
+        }
+
+        @Override
+        public EmpireEvent getResponsibleAction() {
+            return responsibleActions[index];
+        }
+
+        @Override
+        public int getVisits() {
+            return visits[index];
+        }
+
+        @Override
+        public int getWins() {
+            return wins[index];
+        }
+
+        @Override
+        public boolean isLeaf() {
+            return CompactTree.this.isLeaf(index);
+        }
+
+        @Override
+        public SearchNode getMostVisitedChild() {
+            var child = CompactTree.this.getMostVisitedChild(index);
+            if (child == index) return this;
+            return new Node(child);
+        }
+
+        @Override
+        public int getVisitLeadOfMostVisitedChild() {
+            return CompactTree.this.getVisitLeadOfMostVisitedChild(index);
+        }
+
+        @Override
+        public List<SearchNode> getChildrenByVisits() {
+            var byVisits = new ArrayList<SearchNode>(CompactTree.this.getNumberOfChildren(index));
+            for (int child = firstChildren[index]; child != NONE; child = nextSiblings[child]) {
+                byVisits.add(new Node(child));
+            }
+            byVisits.sort(Comparator.comparingInt(SearchNode::getVisits).reversed());
+            return byVisits;
+        }
+
+        @Override
+        public int getNumberOfChildren() {
+            return CompactTree.this.getNumberOfChildren(index);
+        }
+
+        @Override
+        public int getMaxDepth() {
+            return CompactTree.this.getMaxDepth(index);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.Timespan;
+
+// One search and the action it decided on, spans from the start of the search until the action is chosen
+@Name("at.ac.tuwien.ifs.sge.agent.Decision")
+@Label("Decision")
+@Category({"Radetzky", "Search"})
+@Description("A search of the agent and the action it chose")
+public class DecisionEvent extends jdk.jfr.Event {
+    @Label("Root Visits")
+    public int rootVisits;
+
+    @Label("Root Children")
+    public int rootChildren;
+
+    @Label("Chosen Action")
+    @Description("Class of the chosen action, empty if the agent does nothing")
+    public String chosenAction;
+
+    @Label("Chosen Visits")
+    public int chosenVisits;
+
+    @Label("Orders")
+    @Description("Number of actions sent by the decision")
+    public int orders;
+
+    @Label("Iterations")
+    public int iterations;
+
+    @Label("Budget")
+    @Timespan(Timespan.MILLISECONDS)
+    public long budget;
+}
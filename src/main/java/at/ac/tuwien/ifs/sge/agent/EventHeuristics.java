@@ -1,8 +1,6 @@
 package at.ac.tuwien.ifs.sge.agent;
 
-import java.util.AbstractMap;
 import java.util.ArrayList;
-import java.util.Map;
 import java.util.Random;
 import java.util.Set;
 
@@ -11,30 +9,64 @@ import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.MovementStartOrder;
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
-import at.ac.tuwien.ifs.sge.game.empire.map.Position;
-import at.ac.tuwien.ifs.sge.game.empire.model.map.EmpireCity;
 import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnitState;
 
 public class EventHeuristics {
     public final EmpireEvent event;
     public final float heuristic;
+    public final boolean estimated; // only the cheap part of the heuristic was calculated
 
     // todo use playerId, if other player than -heuristic
-    public EventHeuristics(Empire gameState, EmpireEvent event, DiscoveredBoard discoveredBoard) {
+    public EventHeuristics(Empire gameState, CityIndex cityIndex, EmpireEvent event, DiscoveredBoard discoveredBoard) {
         this.event = event;
-        this.heuristic = calculateTotalHeuristic(gameState, event, discoveredBoard);
+        this.heuristic = calculateTotalHeuristic(gameState, cityIndex, event, discoveredBoard);
+        this.estimated = false;
     }
 
-    public static ArrayList<EventHeuristics> fromGameState(Empire gameState, int playerId, DiscoveredBoard discoveredBoard) {
+    public EventHeuristics(EmpireEvent event, float heuristic) {
+        this(event, heuristic, false);
+    }
+
+    private EventHeuristics(EmpireEvent event, float heuristic, boolean estimated) {
+        this.event = event;
+        this.heuristic = heuristic;
+        this.estimated = estimated;
+    }
+
+    public static ArrayList<EventHeuristics> fromGameState(Empire gameState, CityIndex cityIndex, int playerId, DiscoveredBoard discoveredBoard) {
+        var possibleActions = gameState.getPossibleActions(playerId);
+        var result = new ArrayList<EventHeuristics>(possibleActions.size());
+        for (EmpireEvent action : possibleActions) {
+            result.add(new EventHeuristics(gameState, cityIndex, action, discoveredBoard));
+        }
+        return result;
+    }
+
+    // Only rates the actions by what can be told with a few lookups, the total heuristic is calculated once an action is
+    // actually explored
+    public static ArrayList<EventHeuristics> estimateFromGameState(Empire gameState, int playerId, DiscoveredBoard discoveredBoard) {
         var possibleActions = gameState.getPossibleActions(playerId);
         var result = new ArrayList<EventHeuristics>(possibleActions.size());
         for (EmpireEvent action : possibleActions) {
-            result.add(new EventHeuristics(gameState, action, discoveredBoard));
+            var heuristic = UnitHeuristics.calculateUnitHeuristic(action, discoveredBoard);
+            if (action instanceof MovementStartOrder movementStartOrder) heuristic += estimateMove(gameState, movementStartOrder);
+            result.add(new EventHeuristics(action, heuristic, true));
         }
         return result;
     }
 
-    public static float calculateTotalHeuristic(Empire gameState, EmpireEvent event, DiscoveredBoard discoveredBoard) {
+    // The city checks of calculateTotalHeuristic, without the search for the closest city
+    private static float estimateMove(Empire gameState, MovementStartOrder movementStartOrder) {
+        var unit = gameState.getUnit(movementStartOrder.getUnitId());
+        if (unit.getState() == EmpireUnitState.Moving) return 0;
+        var cityAtStart = gameState.getCity(unit.getPosition());
+        if (cityAtStart != null && cityAtStart.getOccupants().size() <= 1) return -1000000f; // would abort production of unit
+        var cityAtDestination = gameState.getCity(movementStartOrder.getDestination());
+        if (cityAtDestination != null && cityAtDestination.getOccupants().isEmpty()) return 1000; // occupy unoccupied cities
+        return 0;
+    }
+
+    public static float calculateTotalHeuristic(Empire gameState, CityIndex cityIndex, EmpireEvent event, DiscoveredBoard discoveredBoard) {
         float heuristic = 0;
         if (event instanceof MovementStartOrder movementStartOrder) {
             var unit = gameState.getUnit(movementStartOrder.getUnitId());
@@ -58,32 +90,15 @@ public class EventHeuristics {
                 }
             }
 
-            var citiesByPos = gameState.getCitiesByPosition();
-            if (!citiesByPos.isEmpty()) {
-                EmpireCity closest = null;
-                var closestDist = 0f;
-                for (Map.Entry<Position, EmpireCity> entry : citiesByPos.entrySet()) {
-                    var current = entry.getValue();
-                    if (current.getOccupants().size() > 0) continue;
-                    var distance = PositionExtensions.GetDistance(unitPosition, entry.getKey());
-                    if (closest == null) {
-                        closest = entry.getValue();
-                        closestDist = distance;
-                    } else if (distance < closestDist) {
-                        closestDist = distance;
-                        closest = current;
-                    }
-                }
-
-                if (closest != null) {
-                    var distanceFromStart = closestDist;
-                    if (distanceFromStart < .001f) distanceFromStart = .001f; // prevent division by 0, should never happen anyway
-                    var distanceFromDestination = PositionExtensions.GetDistance(destination, closest.getPosition());
-                    // reward getting closer to the closest empty city, faster units will be there sooner, so higher reward
-                    // delta / distanceFromStart so that closer units get higher reward, otherwise the furthest unit would be sent to city
-                    var delta = distanceFromStart - distanceFromDestination;
-                    heuristic += (delta / distanceFromStart) * UnitStats.speedOfType[unit.getUnitTypeId()] * 10;
-                }
+            var closest = cityIndex.getClosestUnoccupiedCity(gameState, unitPosition);
+            if (closest != null) {
+                var distanceFromStart = PositionExtensions.GetDistance(unitPosition, closest);
+                if (distanceFromStart < .001f) distanceFromStart = .001f; // prevent division by 0, should never happen anyway
+                var distanceFromDestination = PositionExtensions.GetDistance(destination, closest);
+                // reward getting closer to the closest empty city, faster units will be there sooner, so higher reward
+                // delta / distanceFromStart so that closer units get higher reward, otherwise the furthest unit would be sent to city
+                var delta = distanceFromStart - distanceFromDestination;
+                heuristic += (delta / distanceFromStart) * UnitStats.speedOfType[unit.getUnitTypeId()] * 10;
             }
         }
         return heuristic +
@@ -91,31 +106,28 @@ public class EventHeuristics {
                 discoveredBoard.calculateHeuristics(gameState, event);
     }
 
-    public static EmpireEvent selectBestRandomly(Random random, Empire gameState, Set<EmpireEvent> possibleActions, DiscoveredBoard discoveredBoard) {
+    public static EmpireEvent selectBestRandomly(Random random, Empire gameState, CityIndex cityIndex, Set<EmpireEvent> possibleActions, DiscoveredBoard discoveredBoard) {
         var doNothing = random.nextInt(possibleActions.size()) == 0;
         if (doNothing) return null;
 
-        ArrayList<AbstractMap.SimpleImmutableEntry<EmpireEvent, Float>> eventsAndHeuristics = new ArrayList<>(possibleActions.size());
-        var heuristicSum = 0.0;
-
+        var sampler = ActionSampler.get();
+        sampler.clear();
         for (EmpireEvent event : possibleActions) {
-            var heuristics = calculateTotalHeuristic(gameState, event, discoveredBoard);
+            var heuristics = calculateTotalHeuristic(gameState, cityIndex, event, discoveredBoard);
             if (heuristics < 0) continue; // todo this totally prevents bad decisions, maybe not so good after all
-            heuristicSum += heuristics;
-            eventsAndHeuristics.add(new AbstractMap.SimpleImmutableEntry<>(event, heuristics));
+            sampler.add(event, heuristics);
         }
+        var selected = sampler.sample(random);
+        sampler.clear();
+        return selected;
+    }
 
-        var randomOffset = random.nextDouble() * heuristicSum;
-        var offset = 0.0;
-
-        for (int i = 0; i < eventsAndHeuristics.size(); i++) {
-            var entry = eventsAndHeuristics.get(i);
-            offset += entry.getValue();
-            if (randomOffset < offset) {
-                return entry.getKey();
-            }
-        }
-        return null;
+    // Actions created from different copies of the game are different instances
+    public static boolean isSameAction(EmpireEvent a, EmpireEvent b) {
+        if (a == b) return true;
+        if (a == null || b == null) return false;
+        if (a.equals(b)) return true;
+        return a.getClass() == b.getClass() && a.toString().equals(b.toString());
     }
 
     public static float calculatePostSimulation(int playerId, Empire gameState, DiscoveredBoard discoveredBoard, UnitHeuristics unitHeuristics) {
@@ -2,59 +2,111 @@ package at.ac.tuwien.ifs.sge.agent;
 
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Random;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
 
-import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredBoard;
-import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
-import at.ac.tuwien.ifs.sge.core.engine.communication.events.GameActionEvent;
 import at.ac.tuwien.ifs.sge.core.engine.logging.Logger;
 import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
-import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
 
-public class GameNode {
+public class GameNode implements SearchNode, SearchTree {
+    private static final AtomicIntegerFieldUpdater<GameNode> WINS = AtomicIntegerFieldUpdater.newUpdater(GameNode.class, "wins");
+    private static final AtomicIntegerFieldUpdater<GameNode> VISITS = AtomicIntegerFieldUpdater.newUpdater(GameNode.class, "visits");
+    private static final AtomicIntegerFieldUpdater<GameNode> VIRTUAL_LOSSES = AtomicIntegerFieldUpdater.newUpdater(GameNode.class, "virtualLosses");
+    private SearchContext context;
     private final int executionTime;
     private final int responsiblePlayerId;
+    private int depth;
     private GameNode parent;
     protected final int playerId;
     protected final int radetzkyPlayerId;
-    private final Empire immutableGameState;
     private final EmpireEvent responsibleAction;
     private final ArrayList<EventHeuristics> unexploredActions;
-    private List<GameNode> children;
-    private int wins;
-    private int visits;
-    private final Random random;
+    private volatile List<GameNode> children;
+    private volatile int wins;
+    private volatile int visits;
+    private volatile int virtualLosses; // visits of workers that are still in this subtree, counted as losses until they are back propagated
     private final float[] heuristic;
-    private final UnitHeuristics[] immutableUnitHeuristics;
-    private final DiscoveredBoard[] immutableDiscoveredBoard;
-
-    public GameNode(Random random, UnitHeuristics[] unitHeuristics, int executionTime, int radetzkyPlayerId, int playerId, int responsiblePlayerId, Empire immutableGameState, EmpireEvent responsibleAction, DiscoveredBoard[] discoveredBoard) {
-        this.random = random;
-        this.heuristic = new float[immutableGameState.getNumberOfPlayers()];
-        this.radetzkyPlayerId = radetzkyPlayerId;
-        this.executionTime = executionTime;
+    private long stateHash; // 0 if transpositions are disabled or the state could not be built
+
+    public GameNode(SearchContext context, int playerId) {
+        this(context, null, playerId, playerId, null, 0);
+    }
+
+    // Creates a root in the same position as the given root, that offers the same action instances
+    public GameNode(SearchContext context, int playerId, GameNode sameRoot) {
+        this.context = context;
+        this.depth = 0;
+        this.heuristic = sameRoot.heuristic.clone();
+        this.radetzkyPlayerId = context.radetzkyPlayerId;
+        this.executionTime = context.executionTime;
+        this.playerId = playerId;
+        this.responsiblePlayerId = playerId;
+        this.responsibleAction = null;
+        this.stateHash = sameRoot.stateHash;
+        context.nodeBudget.onNodeCreated();
+        synchronized (sameRoot) {
+            this.unexploredActions = new ArrayList<>(sameRoot.unexploredActions);
+        }
+        if (sameRoot.isLeaf()) return;
+        // a reused root may already be expanded
+        for (GameNode child : sameRoot.children) {
+            if (child.responsibleAction == null) continue;
+            unexploredActions.add(new EventHeuristics(child.responsibleAction, child.heuristic[child.responsiblePlayerId]));
+        }
+    }
+
+    // Creates a root in the same position as the given root, that only offers the given actions of it
+    private GameNode(SearchContext context, GameNode sameRoot, List<EventHeuristics> actions) {
+        this.context = context;
+        this.depth = 0;
+        this.heuristic = sameRoot.heuristic.clone();
+        this.radetzkyPlayerId = context.radetzkyPlayerId;
+        this.executionTime = context.executionTime;
+        this.playerId = sameRoot.playerId;
+        this.responsiblePlayerId = sameRoot.playerId;
+        this.responsibleAction = null;
+        this.stateHash = sameRoot.stateHash;
+        this.unexploredActions = new ArrayList<>(actions);
+        context.nodeBudget.onNodeCreated();
+        if (!actions.isEmpty()) heuristic[playerId] = (float) getBestHeuristic(actions);
+    }
+
+    private GameNode(SearchContext context, GameNode parent, int playerId, int responsiblePlayerId, EmpireEvent responsibleAction, float actionHeuristic) {
+        this.context = context;
+        this.parent = parent;
+        this.depth = parent == null ? 0 : parent.depth + 1;
+        this.heuristic = new float[context.numberOfPlayers];
+        this.radetzkyPlayerId = context.radetzkyPlayerId;
+        this.executionTime = context.executionTime;
         this.playerId = playerId;
         this.responsiblePlayerId = responsiblePlayerId;
-        this.immutableGameState = immutableGameState;
         this.responsibleAction = responsibleAction;
-        this.immutableUnitHeuristics = unitHeuristics;
-        this.immutableDiscoveredBoard = discoveredBoard;
-        Empire gameState;
-        var copyOfUnitHeuristics = UnitHeuristics.copy(unitHeuristics);
-        var copyOfBoard = DiscoveredBoard.copy(discoveredBoard);
+        this.heuristic[responsiblePlayerId] = actionHeuristic;
+        context.nodeBudget.onNodeCreated();
+        SimulationState state;
         try {
-            gameState = getGameState(copyOfUnitHeuristics, copyOfBoard);
+            state = materializeState();
         } catch (ActionException e) {
             e.printStackTrace();
             heuristic[responsiblePlayerId] = Float.NEGATIVE_INFINITY;
             unexploredActions = new ArrayList<>();
             return;
         }
-        this.unexploredActions = EventHeuristics.fromGameState(gameState, playerId, copyOfBoard[playerId]);
+        if (context.transpositions != null) {
+            stateHash = StateHash.of(state, executionTime);
+            context.transpositions.lookup(stateHash);
+        }
+        actionHeuristic = heuristic[responsiblePlayerId]; // may have been calculated lazily by materializeState
+        if (isWidening()) this.unexploredActions = EventHeuristics.estimateFromGameState(state.game, playerId, state.discoveredBoards[playerId]);
+        else this.unexploredActions = EventHeuristics.fromGameState(state.game, state.getCityIndex(), playerId, state.discoveredBoards[playerId]);
+        state.revert();
         if (!unexploredActions.isEmpty()) {
             var best = unexploredActions.get(0);
             for (int i = 1; i < unexploredActions.size(); i++) {
@@ -65,8 +117,8 @@ public class GameNode {
             }
             this.heuristic[playerId] = best.heuristic;
         }
-        // todo propagate to parent nodes?
-        this.heuristic[responsiblePlayerId] = EventHeuristics.calculateTotalHeuristic(gameState, responsibleAction, copyOfBoard[responsiblePlayerId]);
+        // the responsible action was scored in the state it was chosen in
+        this.heuristic[responsiblePlayerId] = actionHeuristic;
         if (parent != null) parent.setHeuristic(heuristic[responsiblePlayerId], responsiblePlayerId);
     }
 
@@ -76,30 +128,179 @@ public class GameNode {
         if (parent != null) parent.setHeuristic(childHeuristic, playerId);
     }
 
-    public void addChild(GameNode gameNode) {
-        if (children == null) children = new ArrayList<>();
-        children.add(gameNode);
-        gameNode.parent = this;
+    // Makes this node the root of a new search in the given context. The subtree is kept, its statistics are scaled by the decay.
+    // Returns the number of nodes in the subtree
+    public int reroot(SearchContext context, float decay) {
+        parent = null;
+        return adopt(context, 0, decay);
+    }
+
+    private int adopt(SearchContext context, int depth, float decay) {
+        this.context = context;
+        this.depth = depth;
+        this.visits = (int) (visits * decay);
+        this.wins = (int) (wins * decay);
+        this.virtualLosses = 0;
+        var nodes = 1;
+        if (isLeaf()) return nodes;
+        for (GameNode child : children) {
+            nodes += child.adopt(context, depth + 1, decay);
+        }
+        return nodes;
+    }
+
+    // Releases the subtrees of the least visited nodes until at least the given number of nodes is released.
+    // Must not run while workers are searching this tree
+    public int pruneLeastVisited(int nodesToRelease) {
+        var candidates = new ArrayList<GameNode>();
+        collectInnerNodes(candidates);
+        candidates.sort(Comparator.comparingInt(GameNode::getVisits));
+        var released = 0;
+        for (int i = 0; i < candidates.size() && released < nodesToRelease; i++) {
+            var candidate = candidates.get(i);
+            // after the decay of a reroot parents and children often have the same visits, a parent may already be collapsed
+            if (hasCollapsedAncestor(candidate)) continue;
+            released += candidate.collapse();
+        }
+        context.nodeBudget.onNodesReleased(released);
+        return released;
+    }
+
+    private static boolean hasCollapsedAncestor(GameNode node) {
+        for (GameNode ancestor = node.parent; ancestor != null; ancestor = ancestor.parent) {
+            if (ancestor.isLeaf()) return true;
+        }
+        return false;
+    }
+
+    private void collectInnerNodes(List<GameNode> result) {
+        if (isLeaf()) return;
+        for (GameNode child : children) {
+            if (child.isLeaf()) continue;
+            result.add(child);
+            child.collectInnerNodes(result);
+        }
+    }
+
+    // Removes all children, their actions can be explored again
+    private int collapse() {
+        if (isLeaf()) return 0;
+        var released = 0;
+        for (GameNode child : children) {
+            released += child.countNodes();
+            if (child.responsibleAction != null) {
+                unexploredActions.add(new EventHeuristics(child.responsibleAction, child.heuristic[child.responsiblePlayerId]));
+            }
+        }
+        children = null;
+        return released;
+    }
+
+    private int countNodes() {
+        var nodes = 1;
+        if (isLeaf()) return nodes;
+        for (GameNode child : children) {
+            nodes += child.countNodes();
+        }
+        return nodes;
     }
 
-    private Empire getGameState(UnitHeuristics[] copyOfImmutableUnit, DiscoveredBoard[] copyOfImmutableBoard) throws ActionException {
-        if (parent == null) return (Empire) immutableGameState.copy();
-        Empire currentState = parent.getGameState(copyOfImmutableUnit, copyOfImmutableBoard);
+    // Returns the child that was reached by one of the given actions, or the child that took no action if none matches
+    public GameNode getChildMatching(Collection<EmpireEvent> actions) {
+        if (isLeaf()) return null;
+        GameNode doNothing = null;
+        for (GameNode child : children) {
+            if (child.responsibleAction == null) {
+                if (doNothing == null) doNothing = child;
+                continue;
+            }
+            for (EmpireEvent action : actions) {
+                if (EventHeuristics.isSameAction(child.responsibleAction, action)) return child;
+            }
+        }
+        return doNothing;
+    }
 
-        if (responsibleAction != null) {
-            currentState.scheduleActionEvent(new GameActionEvent<>(playerId, responsibleAction, currentState.getGameClock().getGameTimeMs() + 1));
-            for (int i = 0; i < copyOfImmutableBoard.length; i++) {
-                copyOfImmutableUnit[i].apply(currentState, responsibleAction);
-                copyOfImmutableBoard[i].apply(currentState, responsibleAction);
+    // Splits the unexplored actions of this root by the unit or city they are given to, see ActionConflicts.getActor.
+    // Returns a root for each of the given contexts, the i-th context gets the actors i, i + contexts, ... of the
+    // at most maxActors actors with the best actions. Like every root they can also do nothing
+    public List<List<GameNode>> splitByActor(SearchContext[] contexts, int maxActors) {
+        var actionsByActor = new LinkedHashMap<Object, List<EventHeuristics>>();
+        synchronized (this) {
+            for (EventHeuristics action : unexploredActions) {
+                actionsByActor.computeIfAbsent(ActionConflicts.getActor(action.event), actor -> new ArrayList<>()).add(action);
             }
         }
-        currentState.advance(executionTime);
-        for (int i = 0; i < copyOfImmutableBoard.length; i++) {
-            copyOfImmutableUnit[i].advance(currentState, executionTime);
-            copyOfImmutableBoard[i].advance(executionTime, currentState, copyOfImmutableUnit[i]);
+        var groups = new ArrayList<>(actionsByActor.values());
+        groups.sort(Comparator.comparingDouble(GameNode::getBestHeuristic).reversed());
+        var roots = new ArrayList<List<GameNode>>(contexts.length);
+        for (int i = 0; i < contexts.length; i++) {
+            roots.add(new ArrayList<>());
         }
+        for (int i = 0; i < Math.min(maxActors, groups.size()); i++) {
+            var context = contexts[i % contexts.length];
+            roots.get(i % contexts.length).add(new GameNode(context, this, groups.get(i)));
+        }
+        return roots;
+    }
 
-        return currentState;
+    private static double getBestHeuristic(List<EventHeuristics> actions) {
+        var best = Float.NEGATIVE_INFINITY;
+        for (int i = 0; i < actions.size(); i++) {
+            best = Math.max(best, actions.get(i).heuristic);
+        }
+        return best;
+    }
+
+    public synchronized void addChild(GameNode gameNode) {
+        if (children == null) children = new CopyOnWriteArrayList<>();
+        gameNode.parent = this;
+        children.add(gameNode);
+    }
+
+    // Builds the state of this node once and keeps it in the cache if this node is at a cached depth.
+    // The returned state must only be read, and reverted once it is no longer needed.
+    private SimulationState materializeState() throws ActionException {
+        if (parent == null) return context.rootState;
+        var state = parent.getGameState();
+        if (Float.isNaN(heuristic[responsiblePlayerId])) {
+            // the action was only estimated by the parent, rate it in the state it was chosen in
+            heuristic[responsiblePlayerId] = EventHeuristics.calculateTotalHeuristic(state.game, state.getCityIndex(), responsibleAction, state.discoveredBoards[responsiblePlayerId]);
+        }
+        step(state);
+        if (context.stateCache.shouldCache(depth)) context.stateCache.put(this, state.detach());
+        return state;
+    }
+
+    // Returns a private copy of the state of this node, replayed from the nearest cached ancestor. Without one the walk
+    // starts at the root on the heuristics and boards of this thread, the state has to be reverted afterwards
+    private SimulationState getGameState() throws ActionException {
+        var event = new StateReplayEvent();
+        event.begin();
+        var state = replayState(event);
+        if (event.shouldCommit()) event.finish(depth);
+        return state;
+    }
+
+    private SimulationState replayState(StateReplayEvent event) throws ActionException {
+        if (parent == null) return context.beginWalk();
+        var cached = context.stateCache.get(this);
+        if (cached != null) return cached.copy();
+        var state = parent.replayState(event);
+        step(state);
+        event.steps++;
+        return state;
+    }
+
+    // Reverts the state if the step fails, nobody else gets hold of it
+    private void step(SimulationState state) throws ActionException {
+        try {
+            if (responsibleAction != null) state.apply(responsiblePlayerId, responsibleAction);
+            state.advance(executionTime);
+        } catch (ActionException e) {
+            state.revert();
+            throw e;
+        }
     }
 
     public int getNrOfUnexploredActions() {
@@ -110,7 +311,24 @@ public class GameNode {
         return !unexploredActions.isEmpty();
     }
 
-    public EmpireEvent popUnexploredAction() {
+    private boolean isWidening() {
+        return context.config.wideningConstant > 0;
+    }
+
+    // With progressive widening a node only admits another child once its visits have grown enough
+    private boolean canWiden() {
+        if (unexploredActions.isEmpty()) return false;
+        var children = this.children;
+        var size = children == null ? 0 : children.size();
+        return size < context.config.wideningConstant * Math.pow(visits + 1, context.config.wideningExponent);
+    }
+
+    // NaN makes the child calculate the heuristic of an estimated action itself
+    private static float getActionHeuristic(EventHeuristics action) {
+        return action.estimated ? Float.NaN : action.heuristic;
+    }
+
+    public synchronized EventHeuristics popUnexploredAction() {
         if (unexploredActions.isEmpty()) return null;
 
         var bestIndex = 0;
@@ -124,21 +342,23 @@ public class GameNode {
             }
         }
         unexploredActions.remove(bestIndex);
-        return best.event;
+        return best;
     }
 
     public int getNextPlayerId() {
-        return (playerId + 1) % immutableGameState.getNumberOfPlayers();
+        return (playerId + 1) % context.numberOfPlayers;
     }
 
     public int getPlayerId() {
         return playerId;
     }
 
+    @Override
     public EmpireEvent getResponsibleAction() {
         return responsibleAction;
     }
 
+    @Override
     public int getWins() {
         return wins;
     }
@@ -147,6 +367,7 @@ public class GameNode {
         this.wins = wins;
     }
 
+    @Override
     public int getVisits() {
         return visits;
     }
@@ -156,11 +377,23 @@ public class GameNode {
     }
 
     public void incrementWins() {
-        wins++;
+        WINS.incrementAndGet(this);
     }
 
     public void incrementVisits() {
-        visits++;
+        VISITS.incrementAndGet(this);
+    }
+
+    private void addVirtualLoss() {
+        if (context.virtualLoss != 0) VIRTUAL_LOSSES.addAndGet(this, context.virtualLoss);
+    }
+
+    // Has to be called for the node returned by getBestByHeuristicRecursively once its simulation is done
+    public void removeVirtualLoss() {
+        if (context.virtualLoss == 0) return;
+        for (var node = this; node != null; node = node.parent) {
+            VIRTUAL_LOSSES.addAndGet(node, -context.virtualLoss);
+        }
     }
 
     public float heuristic(float exploitationConstant) {
@@ -173,21 +406,34 @@ public class GameNode {
     }
 
     private float upperConfidenceBound(float exploitationConstant) {
-        float visits;
-        if (this.visits == 0) visits = 1;
-        else visits = this.visits;
+        float visits = this.visits + virtualLosses;
+        if (visits == 0) visits = 1;
+
+        // nodes that reach the same state share their results
+        float winRate = wins / visits;
+        if (stateHash != 0) {
+            var shared = context.transpositions.get(stateHash);
+            var sharedVisits = TranspositionTable.getVisits(shared);
+            if (sharedVisits > this.visits) winRate = TranspositionTable.getWins(shared) / (float) (sharedVisits + virtualLosses);
+        }
 
         float N;
-        if (parent != null) N = parent.getVisits();
+        if (parent != null) N = parent.visits + parent.virtualLosses;
         else N = visits;
 
-        return (wins / visits) + exploitationConstant * (float) Math.sqrt(2 * Math.log(N) / visits);
+        return winRate + exploitationConstant * (float) Math.sqrt(2 * Math.log(N) / visits);
     }
 
+    @Override
     public boolean isLeaf() {
         return children == null || children.isEmpty();
     }
 
+    // Threads that search this tree at the same time spread over different paths
+    public boolean usesVirtualLoss() {
+        return context.virtualLoss > 0;
+    }
+
     public boolean isRoot() {
         return parent == null;
     }
@@ -213,102 +459,100 @@ public class GameNode {
     }
 
     public GameNode getBestByHeuristicRecursively(float exploitationConstant) {
+        addVirtualLoss();
         if (isLeaf()) return this;
+        if (isWidening() && canWiden()) return this;
         var bestChild = getBestChildByHeuristics(exploitationConstant);
-        if (bestChild.hasUnexploredActions()) {
+        if (!isWidening() && bestChild.hasUnexploredActions()) {
             // if it has a better heuristic value keep exploring the root node even though it is no leaf
             if (bestChild.heuristic(exploitationConstant) < this.heuristic(exploitationConstant)) return this;
         }
         return bestChild.getBestByHeuristicRecursively(exploitationConstant);
     }
 
+    // Several workers may expand the same node, the actions are claimed under the lock of the node and the
+    // children are constructed outside of it
     public void expand() {
         int nextPlayerId = getNextPlayerId();
-        if (isRoot()) {
-            for (int i = 0; i < unexploredActions.size(); i++) {
-                var event = unexploredActions.get(i).event;
-                addChild(new GameNode(random, immutableUnitHeuristics, executionTime, radetzkyPlayerId, nextPlayerId, playerId, immutableGameState, event, immutableDiscoveredBoard));
+        if (isRoot() && !isWidening()) {
+            // the root is always expanded, other nodes only while the node budget lasts
+            ArrayList<EventHeuristics> actions;
+            synchronized (this) {
+                if (unexploredActions.isEmpty()) return; // already expanded by another worker
+                actions = new ArrayList<>(unexploredActions);
+                unexploredActions.clear();
+            }
+            for (int i = 0; i < actions.size(); i++) {
+                var action = actions.get(i);
+                addChild(new GameNode(context, this, nextPlayerId, playerId, action.event, getActionHeuristic(action)));
             }
-            unexploredActions.clear();
-            addChild(new GameNode(random, immutableUnitHeuristics, executionTime, radetzkyPlayerId, nextPlayerId, playerId, immutableGameState, null, immutableDiscoveredBoard));
+            addChild(new GameNode(context, this, nextPlayerId, playerId, null, 0));
+        } else if (!isRoot() && context.nodeBudget.isExhausted()) {
+            return;
         } else if (isLeaf()) {
-            addChild(new GameNode(random, immutableUnitHeuristics, executionTime, radetzkyPlayerId, nextPlayerId, playerId, immutableGameState, null, immutableDiscoveredBoard));
+            synchronized (this) {
+                if (!isLeaf()) return;
+                addChild(new GameNode(context, this, nextPlayerId, playerId, null, 0));
+            }
         } else {
-            var action = popUnexploredAction();
-            addChild(new GameNode(random, immutableUnitHeuristics, executionTime, radetzkyPlayerId, nextPlayerId, playerId, immutableGameState, action, immutableDiscoveredBoard));
+            EventHeuristics action;
+            synchronized (this) {
+                if (isWidening() && !canWiden()) return;
+                action = popUnexploredAction();
+            }
+            if (action == null) return;
+            addChild(new GameNode(context, this, nextPlayerId, playerId, action.event, getActionHeuristic(action)));
         }
     }
 
-    public void simulate(Random random, int simulationDepth, long timeOfNextDecision, Logger log) {
-        var depth = 0;
-        var unitHeuristics = UnitHeuristics.copy(immutableUnitHeuristics); // todo make one for each player
-        var discoveredBoards = DiscoveredBoard.copy(immutableDiscoveredBoard);
-        var numberOfPlayers = immutableGameState.getNumberOfPlayers();
-        Empire game;
+    @Override
+    public GameNode getRoot() {
+        return this;
+    }
+
+    @Override
+    public void iterate(Random random, int simulationDepth, long timeOfNextDecision) {
+        var telemetry = context.telemetry;
+        var start = telemetry == null ? 0 : System.nanoTime();
+
+        // Select the best from the children according to the upper confidence bound
+        var tree = getBestByHeuristicRecursively(Radetzky.DEFAULT_EXPLOITATION_CONSTANT);
+        if (telemetry != null) start = telemetry.record(SearchTelemetry.Phase.SELECTION, start);
+
+        // Expand the selected node by one action
+        tree.expand();
+        if (telemetry != null) telemetry.record(SearchTelemetry.Phase.EXPANSION, start);
+
+        // Simulate until the simulation depth is reached and determine winners
+        tree.simulate(random, simulationDepth, timeOfNextDecision);
+
+        tree.removeVirtualLoss();
+    }
+
+    public void simulate(Random random, int simulationDepth, long timeOfNextDecision) {
+        var telemetry = context.telemetry;
+        var start = telemetry == null ? 0 : System.nanoTime();
+        SimulationState state;
         try {
-            game = getGameState(unitHeuristics, discoveredBoards);
+            state = getGameState();
         } catch (ActionException e) {
             return;
         }
-        var currentPlayer = playerId;
+        if (telemetry != null) telemetry.record(SearchTelemetry.Phase.REPLAY, start);
+        Rollout.Results results;
         try {
-            while (!game.isGameOver() && depth++ <= simulationDepth && System.currentTimeMillis() < timeOfNextDecision) {
-                var possibleActions = game.getPossibleActions(currentPlayer);
-                if (possibleActions.size() > 0) {
-                    var nextAction = EventHeuristics.selectBestRandomly(random, game, possibleActions, discoveredBoards[currentPlayer]);
-                    if (nextAction != null) {
-                        game.scheduleActionEvent(new GameActionEvent<>(currentPlayer, nextAction, game.getGameClock().getGameTimeMs() + 1));
-                        for (int i = 0; i < numberOfPlayers; i++) {
-                            unitHeuristics[i].apply(game, nextAction);
-                            discoveredBoards[i].apply(game, nextAction);
-                        }
-                    }
-                }
-                game.advance(executionTime);
-                for (int i = 0; i < numberOfPlayers; i++) {
-                    unitHeuristics[i].advance(game, executionTime);
-                    discoveredBoards[i].advance(executionTime, game, unitHeuristics[i]);
-                }
-                currentPlayer = (currentPlayer + 1) % numberOfPlayers;
-            }
-        } catch (ActionException e) {
-            if (e.getMessage().contains("produce unit with id ")) return; // happens when a unit is produced, but the occupying unit leaves the city in the meantime
-        }
-        // todo maybe somehow add heuristic gained in the simulation to the heuristic value of the node, if the win counter does not reflect that gained knowledge
-        //System.out.println("evaluate results");
-        evaluateResults(game, discoveredBoards, unitHeuristics);
-    }
-
-    private void evaluateResults(Empire gameState, DiscoveredBoard[] discoveredBoard, UnitHeuristics[] unitHeuristics) {
-        int bestPlayerId = 0;
-        float myPerformance = Float.NEGATIVE_INFINITY;
-        float bestPerformance = EventHeuristics.calculatePostSimulation(bestPlayerId, gameState, discoveredBoard[bestPlayerId], unitHeuristics[bestPlayerId]);
-        if (bestPlayerId == playerId) {
-            myPerformance = bestPerformance;
-        }
-        for (int i = 1; i < gameState.getNumberOfPlayers(); i++) {
-            var current = EventHeuristics.calculatePostSimulation(i, gameState, discoveredBoard[i], unitHeuristics[i]);
-            if (i == playerId) {
-                myPerformance = current;
-            }
-            if (current > bestPerformance) {
-                bestPlayerId = i;
-            }
-        }
-
-        incrementVisits();
-        if (bestPlayerId == radetzkyPlayerId || (myPerformance == bestPerformance && playerId == radetzkyPlayerId)) {
-            incrementWins();
-            if (parent != null) parent.backPropagate(radetzkyPlayerId); // best id and radetzky id might be different if best and radetzky are equally good
-        } else if (parent != null) {
-            parent.backPropagate(bestPlayerId);
+            results = Rollout.simulate(context, state, playerId, random, simulationDepth, timeOfNextDecision);
+        } finally {
+            state.revert();
         }
+        if (results.visits > 0) backPropagate(results.visits, results.wins);
     }
 
-    private void backPropagate(int winningPlayerId) {
-        incrementVisits();
-        if (winningPlayerId == radetzkyPlayerId) incrementWins();
-        if (parent != null) parent.backPropagate(winningPlayerId);
+    private void backPropagate(int visits, int wins) {
+        VISITS.addAndGet(this, visits);
+        if (wins > 0) WINS.addAndGet(this, wins);
+        if (stateHash != 0) context.transpositions.record(stateHash, visits, wins);
+        if (parent != null) parent.backPropagate(visits, wins);
     }
 
     public void print(Logger logger) {
@@ -323,6 +567,74 @@ public class GameNode {
         return responsibleAction + " visits: " + visits + " wins: " + wins + " all heuristic: " + Arrays.toString(heuristic) + " heuristic: " + heuristic(Radetzky.DEFAULT_EXPLOITATION_CONSTANT);
     }
 
+    // Adds the visits and wins of the children of another root, that was created with the same action instances
+    public void mergeRootStatistics(GameNode otherRoot) {
+        VISITS.addAndGet(this, otherRoot.visits);
+        WINS.addAndGet(this, otherRoot.wins);
+        if (otherRoot.isLeaf()) return;
+        for (GameNode otherChild : otherRoot.children) {
+            var child = getChild(otherChild.responsibleAction);
+            if (child == null) {
+                addChild(otherChild);
+            } else {
+                VISITS.addAndGet(child, otherChild.visits);
+                WINS.addAndGet(child, otherChild.wins);
+            }
+        }
+    }
+
+    private GameNode getChild(EmpireEvent action) {
+        if (isLeaf()) return null;
+        for (int i = 0; i < children.size(); i++) {
+            var child = children.get(i);
+            if (child.responsibleAction == action) return child;
+        }
+        return null;
+    }
+
+    // Returns by how many visits the most visited child is ahead of the second most visited one
+    @Override
+    public int getVisitLeadOfMostVisitedChild() {
+        if (isLeaf()) return 0;
+        var most = 0;
+        var second = 0;
+        for (GameNode child : children) {
+            var visits = child.visits;
+            if (visits > most) {
+                second = most;
+                most = visits;
+            } else if (visits > second) {
+                second = visits;
+            }
+        }
+        return most - second;
+    }
+
+    @Override
+    public int getNumberOfChildren() {
+        var children = this.children;
+        return children == null ? 0 : children.size();
+    }
+
+    @Override
+    public int getMaxDepth() {
+        if (isLeaf()) return 0;
+        var maxDepth = 0;
+        for (GameNode child : children) {
+            maxDepth = Math.max(maxDepth, child.getMaxDepth());
+        }
+        return maxDepth + 1;
+    }
+
+    @Override
+    public List<SearchNode> getChildrenByVisits() {
+        if (isLeaf()) return List.of();
+        var byVisits = new ArrayList<SearchNode>(children);
+        byVisits.sort(Comparator.comparingInt(SearchNode::getVisits).reversed());
+        return byVisits;
+    }
+
+    @Override
     public GameNode getMostVisitedChild() {
         if (isLeaf()) return this;
         GameNode mostVisited = children.get(0);
@@ -338,4 +650,3 @@ public class GameNode {
         return mostVisited;
     }
 }
-// todo add cache for gamestate in game node
@@ -0,0 +1,109 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// Keeps materialized states of some game nodes, so that they do not need to be replayed from the root every time.
+// Cached states are shared and must never be mutated, callers work on copies.
+// The cache is split into segments with their own lock, so that parallel workers rarely wait for each other.
+public class GameStateCache {
+    private static final float MIN_FREE_HEAP_RATIO = .2f;
+    private static final int SEGMENTS = 16;
+    private final int depthInterval;
+    private final Segment[] segments;
+
+    public GameStateCache(int maxEntries, int depthInterval) {
+        this.depthInterval = depthInterval;
+        this.segments = new Segment[maxEntries > 0 ? SEGMENTS : 0];
+        var maxEntriesPerSegment = (maxEntries + SEGMENTS - 1) / SEGMENTS;
+        for (int i = 0; i < segments.length; i++) {
+            segments[i] = new Segment(maxEntriesPerSegment);
+        }
+    }
+
+    public boolean shouldCache(int depth) {
+        return segments.length > 0 && depthInterval > 0 && depth % depthInterval == 0;
+    }
+
+    public SimulationState get(GameNode node) {
+        if (segments.length == 0) return null;
+        return segmentOf(node).get(node);
+    }
+
+    public void put(GameNode node, SimulationState state) {
+        segmentOf(node).put(node, state);
+    }
+
+    public int size() {
+        var size = 0;
+        for (Segment segment : segments) {
+            size += segment.size();
+        }
+        return size;
+    }
+
+    public float getHitRate() {
+        long hits = 0;
+        long misses = 0;
+        for (Segment segment : segments) {
+            synchronized (segment) {
+                hits += segment.hits;
+                misses += segment.misses;
+            }
+        }
+        var total = hits + misses;
+        if (total == 0) return 0;
+        return (float) hits / total;
+    }
+
+    private Segment segmentOf(GameNode node) {
+        var hash = System.identityHashCode(node);
+        hash ^= hash >>> 16;
+        return segments[hash & (SEGMENTS - 1)];
+    }
+
+    private static boolean isLowOnMemory() {
+        var runtime = Runtime.getRuntime();
+        var used = runtime.totalMemory() - runtime.freeMemory();
+        var available = runtime.maxMemory() - used;
+        return available < runtime.maxMemory() * MIN_FREE_HEAP_RATIO;
+    }
+
+    private static class Segment {
+        private final int maxEntries;
+        private final LinkedHashMap<GameNode, SimulationState> states;
+        private long hits;
+        private long misses;
+
+        private Segment(int maxEntries) {
+            this.maxEntries = maxEntries;
+            this.states = new LinkedHashMap<>(16, .75f, true); // access order, so the eldest entry is the least recently used
+        }
+
+        private synchronized SimulationState get(GameNode node) {
+            var state = states.get(node);
+            if (state == null) misses++;
+            else hits++;
+            return state;
+        }
+
+        private synchronized void put(GameNode node, SimulationState state) {
+            states.put(node, state);
+            if (states.size() > maxEntries) evict(states.size() - maxEntries);
+            if (isLowOnMemory()) evict(states.size() / 2);
+        }
+
+        private synchronized int size() {
+            return states.size();
+        }
+
+        private void evict(int count) {
+            Iterator<Map.Entry<GameNode, SimulationState>> iterator = states.entrySet().iterator();
+            while (count-- > 0 && iterator.hasNext()) {
+                iterator.next();
+                iterator.remove();
+            }
+        }
+    }
+}
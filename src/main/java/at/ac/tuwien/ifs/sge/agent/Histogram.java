@@ -0,0 +1,73 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+
+// Histogram of non-negative values in power of two buckets. Recording only adds to LongAdders, so many threads can
+// record at once without contending. Percentiles are the upper bound of the bucket they fall into.
+public class Histogram {
+    private static final int BUCKETS = 64;
+    private final LongAdder[] buckets = new LongAdder[BUCKETS]; // bucket i holds the values in [2^(i-1), 2^i)
+    private final LongAdder count = new LongAdder();
+    private final LongAdder sum = new LongAdder();
+    private final LongAccumulator max = new LongAccumulator(Math::max, 0);
+
+    public Histogram() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i] = new LongAdder();
+        }
+    }
+
+    public void record(long value) {
+        if (value < 0) value = 0;
+        buckets[Math.min(BUCKETS - 1, 64 - Long.numberOfLeadingZeros(value))].increment();
+        count.increment();
+        sum.add(value);
+        max.accumulate(value);
+    }
+
+    // Must not run while values are recorded, otherwise they may be lost or only partly counted
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            buckets[i].reset();
+        }
+        count.reset();
+        sum.reset();
+        max.reset();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMean() {
+        var count = getCount();
+        return count == 0 ? 0 : sum.sum() / (double) count;
+    }
+
+    public long getMax() {
+        return max.get();
+    }
+
+    public long getPercentile(double percentile) {
+        var count = getCount();
+        if (count == 0) return 0;
+        var rank = (long) Math.ceil(percentile * count);
+        var seen = 0L;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += buckets[i].sum();
+            if (seen >= rank) return Math.min(getMax(), i == 0 ? 0 : (1L << i) - 1);
+        }
+        return getMax();
+    }
+
+    public void appendJson(StringBuilder json) {
+        json.append("{\"count\":").append(getCount())
+                .append(",\"mean\":").append(Math.round(getMean()))
+                .append(",\"p50\":").append(getPercentile(.5))
+                .append(",\"p90\":").append(getPercentile(.9))
+                .append(",\"p99\":").append(getPercentile(.99))
+                .append(",\"max\":").append(getMax())
+                .append('}');
+    }
+}
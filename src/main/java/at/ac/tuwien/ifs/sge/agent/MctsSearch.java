@@ -0,0 +1,337 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BooleanSupplier;
+import java.util.function.IntUnaryOperator;
+
+import at.ac.tuwien.ifs.sge.core.engine.logging.Logger;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+
+// Parallel monte carlo tree search. Either every thread searches its own tree on its own copy of the state and the
+// statistics of the root children are merged afterwards, or all threads search one shared tree, spread out by virtual losses.
+// Trees are made of GameNodes, or stored in the arrays of a CompactTree.
+public class MctsSearch {
+    private static final int DEFAULT_SIMULATION_DEPTH = 30;
+    private static final int STATE_CACHE_SIZE = 256;
+    private static final int STATE_CACHE_DEPTH_INTERVAL = 1;
+    private static final long PONDER_STREAMS = 1L << 32; // the random streams of pondering follow the ones of the search
+    private static final int MAX_FACTORED_ACTORS = 32; // units and cities that get their own tree, the ones with the best actions
+    private final SearchConfig config;
+    private final ExecutorService pool;
+    private final Logger log;
+    private final int radetzkyPlayerId;
+    private final int simulationTimeStep;
+    private final RandomSource[] randoms; // one per worker
+    private long decisions = 0;
+    private volatile int iterationsOfLastSearch = 0;
+    private final TimeManager timeManager;
+    private final NodeBudget nodeBudget;
+    private final TranspositionTable transpositions;
+    private final SearchTelemetry telemetry; // null if disabled
+    private final ConcurrentLinkedQueue<EmpireEvent> observedActions = new ConcurrentLinkedQueue<>();
+    private GameNode expectedRoot; // the child chosen by the last decision
+
+    public MctsSearch(SearchConfig config, ExecutorService pool, Logger log, int radetzkyPlayerId, int simulationTimeStep, TimeManager timeManager) {
+        this.config = config;
+        this.timeManager = timeManager;
+        this.nodeBudget = new NodeBudget(config.maxNodes);
+        this.transpositions = config.transpositionTableSize > 0 ? new TranspositionTable(config.transpositionTableSize) : null;
+        this.pool = pool;
+        this.log = log;
+        this.radetzkyPlayerId = radetzkyPlayerId;
+        this.simulationTimeStep = simulationTimeStep;
+        this.telemetry = openTelemetry(config.telemetryFile, log);
+        this.randoms = new RandomSource[config.threads];
+        for (int i = 0; i < randoms.length; i++) {
+            randoms[i] = new RandomSource(config.seed, i);
+        }
+    }
+
+    private static SearchTelemetry openTelemetry(String file, Logger log) {
+        try {
+            var telemetry = SearchTelemetry.open(file);
+            if (telemetry != null) log.info("Writing search telemetry to " + file);
+            return telemetry;
+        } catch (IOException e) {
+            log.error("Could not open telemetry file " + file + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    public SearchNode search(SimulationState rootState, long timeOfNextDecision) throws InterruptedException, ExecutionException {
+        if (transpositions != null) transpositions.age();
+        decisions++;
+        var startTime = System.currentTimeMillis();
+        SearchNode root;
+        if (config.treeLayout == SearchConfig.TreeLayout.COMPACT) root = searchCompactTrees(rootState, timeOfNextDecision);
+        else if (config.parallelism == SearchConfig.Parallelism.TREE) root = searchSharedTree(rootState, timeOfNextDecision);
+        else root = searchIndependentTrees(rootState, timeOfNextDecision);
+        if (telemetry != null) telemetry.onDecision(decisions, iterationsOfLastSearch, System.currentTimeMillis() - startTime, nodeBudget.getNodes(), root);
+        return root;
+    }
+
+    public void close() {
+        if (telemetry != null) telemetry.close();
+    }
+
+    // One tree per unit or city of radetzky, that only offers the actions of it at the root. The trees are spread over
+    // the threads, every thread takes turns between its trees. Returns the most visited child of every tree that
+    // decided to act, the best win rate first. Factored trees are not reused
+    public List<SearchNode> searchFactored(SimulationState rootState, long timeOfNextDecision) throws InterruptedException, ExecutionException {
+        if (transpositions != null) transpositions.age();
+        decisions++;
+        discardReusableTree();
+        nodeBudget.reset(0);
+        var startTime = System.currentTimeMillis();
+        var threads = config.threads;
+        var cacheSize = STATE_CACHE_SIZE / threads;
+        var contexts = new SearchContext[threads];
+        contexts[0] = new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState, new GameStateCache(cacheSize, STATE_CACHE_DEPTH_INTERVAL), 0, nodeBudget, transpositions, telemetry, config);
+        for (int i = 1; i < threads; i++) {
+            contexts[i] = new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState.copy(), new GameStateCache(cacheSize, STATE_CACHE_DEPTH_INTERVAL), 0, nodeBudget, transpositions, telemetry, config);
+        }
+        var rootsPerThread = new GameNode(contexts[0], radetzkyPlayerId).splitByActor(contexts, MAX_FACTORED_ACTORS);
+        var iterations = runWorkers(threads, i -> searchInTurns(rootsPerThread.get(i), randoms[i], timeOfNextDecision));
+        // the roots split the actions of the player between them, so all iterations count for the branching factor
+        timeManager.onSearchFinished(sum(iterations), System.currentTimeMillis() - startTime);
+        logIterations(iterations, contexts[0].stateCache);
+
+        var chosen = new ArrayList<SearchNode>();
+        SearchNode bestRoot = null;
+        for (List<GameNode> roots : rootsPerThread) {
+            for (GameNode root : roots) {
+                var child = root.getMostVisitedChild();
+                if (child == root || child.getResponsibleAction() == null || child.getVisits() == 0) continue;
+                if (bestRoot == null || getWinRate(child) > getWinRate(bestRoot.getMostVisitedChild())) bestRoot = root;
+                chosen.add(child);
+            }
+        }
+        chosen.sort(Comparator.comparingDouble(MctsSearch::getWinRate).reversed());
+        if (telemetry != null && bestRoot != null) telemetry.onDecision(decisions, iterationsOfLastSearch, System.currentTimeMillis() - startTime, nodeBudget.getNodes(), bestRoot);
+        return chosen;
+    }
+
+    private static double getWinRate(SearchNode node) {
+        return node.getVisits() == 0 ? 0 : (double) node.getWins() / node.getVisits();
+    }
+
+    private int searchInTurns(List<GameNode> roots, RandomSource random, long timeOfNextDecision) {
+        if (roots.isEmpty()) return 0;
+        var iterations = 0;
+        var decision = decisions;
+        while (System.currentTimeMillis() < timeOfNextDecision && !Thread.currentThread().isInterrupted()) {
+            random.startStream(decision, iterations);
+            roots.get(iterations % roots.size()).iterate(random, DEFAULT_SIMULATION_DEPTH, timeOfNextDecision);
+            iterations++;
+        }
+        return iterations;
+    }
+
+    // Compact trees can not be shared between threads or reused, every thread searches its own tree
+    private SearchNode searchCompactTrees(SimulationState rootState, long timeOfNextDecision) throws InterruptedException, ExecutionException {
+        discardReusableTree();
+        nodeBudget.reset(0);
+        var threads = config.threads;
+        var cacheSize = STATE_CACHE_SIZE / threads;
+        var trees = new CompactTree[threads];
+        trees[0] = new CompactTree(new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState, null, 0, nodeBudget, null, telemetry, config), cacheSize);
+        for (int i = 1; i < threads; i++) {
+            var context = new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState.copy(), null, 0, nodeBudget, null, telemetry, config);
+            trees[i] = new CompactTree(context, cacheSize, trees[0]);
+        }
+
+        var iterations = runWorkers(trees, 1, timeOfNextDecision);
+        for (int i = 1; i < threads; i++) {
+            trees[0].mergeRootStatistics(trees[i]);
+        }
+        logIterations(iterations, null);
+        return trees[0].getRoot();
+    }
+
+    private GameNode searchIndependentTrees(SimulationState rootState, long timeOfNextDecision) throws InterruptedException, ExecutionException {
+        nodeBudget.reset(0);
+        var threads = config.threads;
+        var cacheSize = STATE_CACHE_SIZE / threads;
+        var roots = new GameNode[threads];
+        var stateCache = new GameStateCache(cacheSize, STATE_CACHE_DEPTH_INTERVAL);
+        roots[0] = createRoot(new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState, stateCache, 0, nodeBudget, transpositions, telemetry, config));
+        for (int i = 1; i < threads; i++) {
+            // all trees share the action instances of the first root, so that the root children can be matched by identity
+            var context = new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState.copy(), new GameStateCache(cacheSize, STATE_CACHE_DEPTH_INTERVAL), 0, nodeBudget, transpositions, telemetry, config);
+            roots[i] = new GameNode(context, radetzkyPlayerId, roots[0]);
+        }
+
+        var iterations = runWorkers(roots, 1, timeOfNextDecision);
+        for (int i = 1; i < threads; i++) {
+            roots[0].mergeRootStatistics(roots[i]);
+        }
+        logIterations(iterations, stateCache);
+        return roots[0];
+    }
+
+    private GameNode searchSharedTree(SimulationState rootState, long timeOfNextDecision) throws InterruptedException, ExecutionException {
+        nodeBudget.reset(0);
+        var stateCache = new GameStateCache(STATE_CACHE_SIZE, STATE_CACHE_DEPTH_INTERVAL);
+        var root = createRoot(new SearchContext(simulationTimeStep, radetzkyPlayerId, rootState, stateCache, config.virtualLoss, nodeBudget, transpositions, telemetry, config));
+        var roots = new GameNode[config.threads];
+        Arrays.fill(roots, root);
+        logIterations(runWorkers(roots, roots.length, timeOfNextDecision), stateCache);
+        return root;
+    }
+
+    // Keeps searching the subtree of the kept child until isDone returns true or the time is up. The next search adopts
+    // the subtree if the game reached its position, otherwise it is dropped as before. Returns the number of iterations.
+    // Without virtual loss all threads would follow the same path, then only one thread ponders
+    public int ponder(long until, BooleanSupplier isDone) throws InterruptedException, ExecutionException {
+        var root = expectedRoot;
+        if (root == null) return 0;
+        var threads = root.usesVirtualLoss() ? randoms.length : 1;
+        List<Future<Integer>> futures = new ArrayList<>(threads - 1);
+        for (int i = 1; i < threads; i++) {
+            var random = randoms[i];
+            futures.add(pool.submit(() -> ponder(root, random, until, isDone)));
+        }
+        var iterations = ponder(root, randoms[0], until, isDone);
+        for (Future<Integer> future : futures) {
+            try {
+                iterations += future.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof OutOfMemoryError outOfMemoryError) throw outOfMemoryError;
+                throw e;
+            }
+        }
+        log.info("Pondered " + iterations + " iterations, nodes: " + nodeBudget.getNodes() + "/" + nodeBudget.getMaxNodes());
+        return iterations;
+    }
+
+    private int ponder(GameNode root, RandomSource random, long until, BooleanSupplier isDone) {
+        var iterations = 0;
+        var decision = decisions;
+        while (System.currentTimeMillis() < until && !isDone.getAsBoolean() && !Thread.currentThread().isInterrupted()) {
+            random.startStream(decision, PONDER_STREAMS + iterations);
+            root.iterate(random, DEFAULT_SIMULATION_DEPTH, until);
+            iterations++;
+        }
+        return iterations;
+    }
+
+    public int getIterationsOfLastSearch() {
+        return iterationsOfLastSearch;
+    }
+
+    public void onGameUpdate(EmpireEvent action) {
+        if (config.treeReuse) observedActions.add(action);
+    }
+
+    // The subtree of the chosen child is reused by the next search, if the game reaches the expected position
+    public void keep(SearchNode chosenChild) {
+        expectedRoot = config.treeReuse && chosenChild instanceof GameNode gameNode ? gameNode : null;
+    }
+
+    public void discardReusableTree() {
+        expectedRoot = null;
+        observedActions.clear();
+    }
+
+    public void onOutOfMemory() {
+        discardReusableTree();
+        nodeBudget.shrink();
+        log.error("Out of memory, reduced the node budget to " + nodeBudget.getMaxNodes());
+    }
+
+    private GameNode createRoot(SearchContext context) {
+        var root = takeReusableRoot();
+        if (root == null) return new GameNode(context, radetzkyPlayerId);
+        nodeBudget.reset(root.reroot(context, config.reuseDecay));
+        // leave room for the new search
+        var nodesToRelease = nodeBudget.getNodes() - nodeBudget.getMaxNodes() / 2;
+        if (nodesToRelease > 0) root.pruneLeastVisited(nodesToRelease);
+        return root;
+    }
+
+    // Follows the actions of the other players since the last decision down to the next node of radetzky
+    private GameNode takeReusableRoot() {
+        var node = expectedRoot;
+        expectedRoot = null;
+        var actions = new ArrayList<EmpireEvent>();
+        EmpireEvent action;
+        while ((action = observedActions.poll()) != null) {
+            actions.add(action);
+        }
+        while (node != null && node.getPlayerId() != radetzkyPlayerId) {
+            node = node.getChildMatching(actions);
+        }
+        return node;
+    }
+
+    // Searches the i-th tree on the i-th thread, the first one runs on the calling thread
+    private int[] runWorkers(SearchTree[] trees, int workersPerRoot, long timeOfNextDecision) throws InterruptedException, ExecutionException {
+        var startTime = System.currentTimeMillis();
+        var iterations = runWorkers(trees.length, i -> search(trees[i], randoms[i], workersPerRoot, startTime, timeOfNextDecision));
+        timeManager.onSearchFinished(sum(iterations) * workersPerRoot / trees.length, System.currentTimeMillis() - startTime);
+        return iterations;
+    }
+
+    // Runs the i-th worker on the i-th thread, the first one on the calling thread. Workers return their iterations
+    private int[] runWorkers(int workers, IntUnaryOperator worker) throws InterruptedException, ExecutionException {
+        var iterations = new int[workers];
+        List<Future<Integer>> futures = new ArrayList<>(workers - 1);
+        for (int i = 1; i < workers; i++) {
+            var index = i;
+            futures.add(pool.submit(() -> worker.applyAsInt(index)));
+        }
+        iterations[0] = worker.applyAsInt(0);
+        for (int i = 1; i < workers; i++) {
+            try {
+                iterations[i] = futures.get(i - 1).get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof OutOfMemoryError outOfMemoryError) throw outOfMemoryError;
+                throw e;
+            }
+        }
+        return iterations;
+    }
+
+    private void logIterations(int[] iterations, GameStateCache stateCache) {
+        var totalIterations = sum(iterations);
+        iterationsOfLastSearch = totalIterations;
+        var message = "Iterations: " + totalIterations + " per thread: " + Arrays.toString(iterations) + ", nodes: " + nodeBudget.getNodes() + "/" + nodeBudget.getMaxNodes();
+        if (stateCache != null) message += ", cached states: " + stateCache.size() + ", cache hit rate: " + stateCache.getHitRate();
+        if (transpositions != null && stateCache != null) message += ", transposition hit rate: " + transpositions.getHitRate();
+        log.info(message);
+    }
+
+    private static int sum(int[] iterations) {
+        var sum = 0;
+        for (int i = 0; i < iterations.length; i++) {
+            sum += iterations[i];
+        }
+        return sum;
+    }
+
+    private int search(SearchTree tree, RandomSource random, int workersPerRoot, long startTime, long timeOfNextDecision) {
+        var root = tree.getRoot();
+        var iterations = 0;
+        var decision = decisions;
+        var deadline = timeOfNextDecision;
+        while (!Thread.currentThread().isInterrupted()) {
+            if (System.currentTimeMillis() >= deadline) {
+                deadline = timeManager.extendDeadline(root, startTime, deadline);
+                if (System.currentTimeMillis() >= deadline) break;
+            }
+            if (timeManager.canStopEarly(root, iterations, workersPerRoot, startTime, deadline)) break;
+            random.startStream(decision, iterations);
+            tree.iterate(random, DEFAULT_SIMULATION_DEPTH, deadline);
+            iterations++;
+        }
+        return iterations;
+    }
+}
@@ -0,0 +1,43 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+// Caps the number of game nodes that are alive at the same time, over all trees of a search
+public class NodeBudget {
+    private static final int MIN_NODES = 1000;
+    private final AtomicInteger nodes = new AtomicInteger();
+    private volatile int maxNodes;
+
+    public NodeBudget(int maxNodes) {
+        this.maxNodes = Math.max(MIN_NODES, maxNodes);
+    }
+
+    public boolean isExhausted() {
+        return nodes.get() >= maxNodes;
+    }
+
+    public void onNodeCreated() {
+        nodes.incrementAndGet();
+    }
+
+    public void onNodesReleased(int count) {
+        nodes.addAndGet(-count);
+    }
+
+    public void reset(int aliveNodes) {
+        nodes.set(aliveNodes);
+    }
+
+    public int getNodes() {
+        return nodes.get();
+    }
+
+    public int getMaxNodes() {
+        return maxNodes;
+    }
+
+    // Called after running out of memory, so that the next searches stay below the heap limit
+    public void shrink() {
+        maxNodes = Math.max(MIN_NODES, maxNodes / 2);
+    }
+}
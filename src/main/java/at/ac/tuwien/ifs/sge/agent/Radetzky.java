@@ -1,10 +1,13 @@
 package at.ac.tuwien.ifs.sge.agent;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
-import java.util.Random;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executors;
 import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
 
 import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredBoard;
 import at.ac.tuwien.ifs.sge.agent.discoveredBoard.EnemyDiscoveredBoard;
@@ -17,19 +20,62 @@ import at.ac.tuwien.ifs.sge.core.engine.communication.ActionResult;
 import at.ac.tuwien.ifs.sge.core.engine.communication.events.GameActionEvent;
 import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.VisionUpdate;
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
 
 public class Radetzky extends AbstractRealTimeGameAgent<Empire, EmpireEvent> {
     public static final float DEFAULT_EXPLOITATION_CONSTANT = (float) Math.sqrt(2);
-    private static final int DEFAULT_SIMULATION_DEPTH = 30;
     private static final int executionTime = 2000;
     private static final int simulationTimeStep = 1000;
+    private static final SearchConfig searchConfig = SearchConfig.fromSystemProperties();
     private Future<?> mctsIterationFuture;
     private volatile boolean isRunning;
     private UnitDirectory unitDirectory;
     private RadetzkyDiscoveredBoard radetzkyDiscoveredBoard;
+    // the model of what the players have, only touched by the thread that decides. The engine thread queues the game
+    // updates, they are applied in a batch before every decision
     private UnitHeuristics[] unitHeuristics;
     private DiscoveredBoard[] gameBoards;
+    private final SpscQueue<EmpireEvent> gameUpdates = new SpscQueue<>();
+    private boolean visionUpdated = false; // a vision update was applied since the last decision
+    private MctsSearch search;
+    private TimeManager timeManager;
+    private volatile SentActions lastActions = SentActions.NONE; // the actions that were sent, they may not have been executed yet
+
+    // The actions of one decision and which of them the engine reported. Replaced as a whole, so a late report can not
+    // mark an action of the next decision
+    private static class SentActions {
+        static final SentActions NONE = new SentActions(List.of());
+        final List<EmpireEvent> actions;
+        final AtomicLong executed = new AtomicLong(); // bit i is set if the game already contains the i-th action
+        volatile boolean rejected; // the engine rejected one of the actions, the expected position will not happen
+
+        SentActions(List<EmpireEvent> actions) {
+            this.actions = actions;
+        }
+
+        void markExecuted(EmpireEvent action) {
+            for (int i = 0; i < actions.size(); i++) {
+                if (!EventHeuristics.isSameAction(action, actions.get(i))) continue;
+                var bit = 1L << i;
+                executed.getAndUpdate(bits -> bits | bit);
+                return;
+            }
+        }
+
+        void markRejected(EmpireEvent action) {
+            for (int i = 0; i < actions.size(); i++) {
+                if (EventHeuristics.isSameAction(action, actions.get(i))) {
+                    rejected = true;
+                    return;
+                }
+            }
+        }
+
+        boolean isExecuted(int i) {
+            return (executed.get() & (1L << i)) != 0;
+        }
+    }
 
     public static void main(String[] args) {
         var playerId = getPlayerIdFromArgs(args);
@@ -45,13 +91,33 @@ public class Radetzky extends AbstractRealTimeGameAgent<Empire, EmpireEvent> {
     @Override
     public void startPlaying() {
         isRunning = true;
-        unitDirectory = new UnitDirectory(playerId);
-        initHeuristics();
+        initSearch(copyGame());
         mctsIterationFuture = pool.submit(this::playSimulation);
     }
 
-    private void initHeuristics() {
-        var game = copyGame();
+    // Plays without the engine, the caller decides when to call decide and reports the executed actions with onActionExecuted
+    void startHeadless(Empire game) {
+        pool = Executors.newFixedThreadPool(searchConfig.threads);
+        initSearch(game);
+    }
+
+    void stopHeadless() {
+        pool.shutdownNow();
+        search.close();
+    }
+
+    MctsSearch getSearch() {
+        return search;
+    }
+
+    private void initSearch(Empire game) {
+        unitDirectory = new UnitDirectory(playerId);
+        initHeuristics(game);
+        timeManager = new TimeManager(searchConfig.adaptiveBudget, executionTime, searchConfig.maxBudget, searchConfig.maxGameTime);
+        search = new MctsSearch(searchConfig, pool, log, playerId, simulationTimeStep, timeManager);
+    }
+
+    private void initHeuristics(Empire game) {
         var numberOfPlayers = game.getNumberOfPlayers();
         gameBoards = new DiscoveredBoard[numberOfPlayers];
         unitHeuristics = new UnitHeuristics[numberOfPlayers];
@@ -69,6 +135,7 @@ public class Radetzky extends AbstractRealTimeGameAgent<Empire, EmpireEvent> {
     @Override
     protected void onActionRejected(EmpireEvent action) {
         log.error("Rejected " + action.getClass().getSimpleName() + " action " + action);
+        lastActions.markRejected(action); // ends pondering
     }
 
     @Override
@@ -78,21 +145,52 @@ public class Radetzky extends AbstractRealTimeGameAgent<Empire, EmpireEvent> {
 
     @Override
     protected void initializeThreadPool() {
-        log.info("using " + getMinimumNumberOfThreads() + " threads");
-        pool = Executors.newFixedThreadPool(getMinimumNumberOfThreads());
+        var threads = getMinimumNumberOfThreads() + searchConfig.threads;
+        log.info("using " + threads + " threads, " + searchConfig.threads + " of them for searching");
+        pool = Executors.newFixedThreadPool(threads);
     }
 
+    // Runs on the engine thread, only queues the actions
     @Override
     protected void onGameUpdate(HashMap<EmpireEvent, ActionResult> actionsWithResult) {
-        var game = getGame();
         for (Map.Entry<EmpireEvent, ActionResult> entry : actionsWithResult.entrySet()) {
             if (!entry.getValue().wasSuccessful()) continue;
             var action = entry.getKey();
-            unitDirectory.onGameUpdate(game, action, log);
-            for (int i = 0; i < unitHeuristics.length; i++) {
-                unitHeuristics[i].apply(game, action);
-                gameBoards[i].apply(game, action);
-            }
+            lastActions.markExecuted(action); // ends pondering
+            gameUpdates.offer(action);
+        }
+    }
+
+    private List<EmpireEvent> pollGameUpdates() {
+        var updates = new ArrayList<EmpireEvent>();
+        EmpireEvent action;
+        while ((action = gameUpdates.poll()) != null) {
+            updates.add(action);
+        }
+        return updates;
+    }
+
+    private void applyGameUpdates(Empire game, List<EmpireEvent> updates) {
+        for (int i = 0; i < updates.size(); i++) {
+            onActionExecuted(game, updates.get(i));
+        }
+        // the updates are applied after the units moved on, the map of the game knows what they saw on the way
+        if (visionUpdated) {
+            radetzkyDiscoveredBoard.rescan(game);
+            visionUpdated = false;
+        }
+    }
+
+    // Must be called by the thread that decides. The engine path queues the actions in onGameUpdate, the harness calls
+    // this directly with the game the action was executed in
+    void onActionExecuted(Empire game, EmpireEvent action) {
+        lastActions.markExecuted(action);
+        if (action instanceof VisionUpdate) visionUpdated = true;
+        unitDirectory.onGameUpdate(game, action, log);
+        search.onGameUpdate(action);
+        for (int i = 0; i < unitHeuristics.length; i++) {
+            if (unitHeuristics[i] != null) unitHeuristics[i].apply(game, action); // ours is created by the first decision
+            gameBoards[i].apply(game, action);
         }
     }
 
@@ -100,93 +198,186 @@ public class Radetzky extends AbstractRealTimeGameAgent<Empire, EmpireEvent> {
     public void shutdown() {
         isRunning = false;
         mctsIterationFuture.cancel(true);
+        if (search != null) search.close();
     }
 
     private void playSimulation() {
         log.info("play simulation");
-        Random random = new Random(0);
-        EmpireEvent lastAction = null;
         while (isRunning) {
             try {
-                var simulatedGameState = copyGame();
-                unitHeuristics[playerId] = unitDirectory.getHeuristics(radetzkyDiscoveredBoard.copy());
+                // the queue is emptied before the game is copied, so every action reported as executed is in the copy
+                var updates = pollGameUpdates();
+                var actions = decide(copyGame(), updates);
+                if (!actions.isEmpty()) {
+                    var deadline = System.currentTimeMillis() + 50;
+                    for (EmpireEvent action : actions) {
+                        sendAction(action, deadline);
+                    }
+                    ponder();
+                }
+            } catch (Exception e) {
+                log.printStackTrace(e);
+                break;
+            } catch (OutOfMemoryError e) {
+                // drop the trees and search with fewer nodes instead of giving up
+                search.onOutOfMemory();
+                lastActions = SentActions.NONE;
+            }
+        }
+        log.info("stopped playing");
+    }
 
-                applyLastAction(lastAction, numberOfPlayers, gameBoards, unitHeuristics, simulatedGameState);
-                lastAction = null;
+    // Searches the given copy of the game and returns the actions to send, none to do nothing. The harness reports the
+    // executed actions with onActionExecuted before
+    List<EmpireEvent> decide(Empire simulatedGameState) throws InterruptedException, ExecutionException {
+        return decide(simulatedGameState, List.of());
+    }
 
-                if (!advanceSimulatedGameAndHeuristics(numberOfPlayers, gameBoards, unitHeuristics, simulatedGameState)) continue;
+    private List<EmpireEvent> decide(Empire simulatedGameState, List<EmpireEvent> gameUpdates) throws InterruptedException, ExecutionException {
+        // the queued actions may be older than the copy of the game, the heuristics skip units that do not exist anymore
+        applyGameUpdates(simulatedGameState, gameUpdates);
+        unitHeuristics[playerId] = unitDirectory.getHeuristics(simulatedGameState, radetzkyDiscoveredBoard.copy());
 
-                var root = new GameNode(random, unitHeuristics, simulationTimeStep, playerId, playerId, playerId, simulatedGameState, null, gameBoards);
+        // the search works on copies, so the model only changes by game updates
+        var rootState = new SimulationState(simulatedGameState, UnitHeuristics.copy(unitHeuristics), DiscoveredBoard.copy(gameBoards));
+        var budget = timeManager.getBudget(simulatedGameState.getPossibleActions(playerId).size() + 1, simulatedGameState.getGameClock().getGameTimeMs());
 
-                var iterations = 0;
-                var now = System.currentTimeMillis();
-                var timeOfNextDecision = now + executionTime;
+        if (!applyLastActions(rootState)) search.discardReusableTree();
+        lastActions = SentActions.NONE;
 
-                while (System.currentTimeMillis() < timeOfNextDecision) {
+        // the root is the position in which the decided action will be executed
+        if (!advanceSimulatedGameAndHeuristics(rootState, budget)) {
+            search.discardReusableTree();
+            return List.of();
+        }
 
-                    // Select the best from the children according to the upper confidence bound
-                    var tree = root.getBestByHeuristicRecursively(DEFAULT_EXPLOITATION_CONSTANT);
+        var now = System.currentTimeMillis();
+        var timeOfNextDecision = now + budget;
+        if (searchConfig.factored) return decideFactored(rootState, timeOfNextDecision, budget);
 
-                    // Expand the selected node by one action
-                    tree.expand();
+        var event = new DecisionEvent();
+        event.begin();
+        var root = search.search(rootState, timeOfNextDecision);
 
-                    // Simulate until the simulation depth is reached and determine winners
-                    tree.simulate(random, DEFAULT_SIMULATION_DEPTH, timeOfNextDecision, log);
+        if (root.isLeaf()) {
+            log.info("Could not find a move! Doing nothing...");
+            search.discardReusableTree();
+            return List.of();
+        }
+        // root.print(log);
+        var mostVisitedChild = root.getMostVisitedChild();
+        var bestAction = mostVisitedChild.getResponsibleAction();
+        if (bestAction != null) {
+            log.info("Determined next action: " + bestAction.getClass().getSimpleName() + " " + bestAction);
+        } else {
+            log.info("Best to take no action");
+        }
+        var actions = bestAction == null ? List.<EmpireEvent>of() : selectBatch(root, rootState);
+        if (actions.size() > 1) log.info("Sending " + (actions.size() - 1) + " more actions: " + actions.subList(1, actions.size()));
+        if (event.shouldCommit()) {
+            event.rootVisits = root.getVisits();
+            event.rootChildren = root.getNumberOfChildren();
+            event.chosenAction = bestAction == null ? "" : bestAction.getClass().getSimpleName();
+            event.chosenVisits = mostVisitedChild.getVisits();
+            event.orders = actions.size();
+            event.iterations = search.getIterationsOfLastSearch();
+            event.budget = budget;
+            event.commit();
+        }
+        lastActions = new SentActions(actions);
+        // the kept subtree only knows the first action, the others just make its statistics less exact
+        if (!actions.isEmpty() && actions.get(0) == bestAction) search.keep(mostVisitedChild);
+        else search.discardReusableTree();
+        return actions;
+    }
 
-                    iterations++;
-                }
+    // The most visited root actions that do not conflict with each other, see ActionConflicts. Every action must be
+    // valid after the ones taken before it are executed. Actions the search rates worse than doing nothing are left out
+    private List<EmpireEvent> selectBatch(SearchNode root, SimulationState rootState) {
+        var children = root.getChildrenByVisits();
+        var doNothingWinRate = -1f;
+        for (SearchNode child : children) {
+            if (child.getResponsibleAction() == null && child.getVisits() > 0) doNothingWinRate = child.getWins() / (float) child.getVisits();
+        }
+        var candidates = new ArrayList<EmpireEvent>(children.size());
+        for (SearchNode child : children) {
+            var action = child.getResponsibleAction();
+            if (action == null || child.getVisits() == 0) continue;
+            if (!candidates.isEmpty() && child.getWins() / (float) child.getVisits() < doNothingWinRate) continue;
+            candidates.add(action);
+        }
+        var scratch = (Empire) rootState.game.copy();
+        return ActionConflicts.selectNonConflicting(candidates, action -> action, action -> executeIfValid(scratch, action), searchConfig.maxOrders);
+    }
 
-                if (root.isLeaf()) {
-                    log.info("Could not find a move! Doing nothing...");
-                } else {
-                    log.info("Iterations: " + iterations);
-                    // root.print(log);
-                    var mostVisitedChild = root.getMostVisitedChild();
-                    var bestAction = mostVisitedChild.getResponsibleAction();
-                    if (bestAction != null) {
-                        log.info("Determined next action: " + bestAction.getClass().getSimpleName() + " " + bestAction);
-                        sendAction(bestAction, System.currentTimeMillis() + 50);
-                    } else {
-                        log.info("Best to take no action");
-                    }
-                    lastAction = bestAction;
-                }
+    // Executes the action right away if it is valid, so that the next actions of a batch are checked in the game after it
+    private boolean executeIfValid(Empire game, EmpireEvent action) {
+        if (!game.isValidAction(action, playerId)) return false;
+        try {
+            game.scheduleActionEvent(new GameActionEvent<>(playerId, action, game.getGameClock().getGameTimeMs() + 1));
+            game.advance(1);
+        } catch (ActionException e) {
+            log.info("Left out of the batch: " + e.getMessage());
+            return false;
+        }
+        return true;
+    }
 
-            } catch (Exception e) {
-                log.printStackTrace(e);
-                break;
-            } catch (OutOfMemoryError e) {
-                log.error("OOM!");
-                e.printStackTrace();
-                break;
-            }
+    // Every unit and city is searched on its own, the best of their actions that do not conflict are sent together
+    private List<EmpireEvent> decideFactored(SimulationState rootState, long timeOfNextDecision, long budget) throws InterruptedException, ExecutionException {
+        var event = new DecisionEvent();
+        event.begin();
+        var candidates = search.searchFactored(rootState, timeOfNextDecision);
+        // the trees of the actors do not know each other, so every action is checked after the ones chosen before it
+        var scratch = (Empire) rootState.game.copy();
+        var chosen = ActionConflicts.selectNonConflicting(candidates, SearchNode::getResponsibleAction, node -> executeIfValid(scratch, node.getResponsibleAction()), searchConfig.maxOrders);
+        var actions = new ArrayList<EmpireEvent>(chosen.size());
+        for (SearchNode node : chosen) {
+            actions.add(node.getResponsibleAction());
         }
-        log.info("stopped playing");
+        if (actions.isEmpty()) log.info("Best to take no action");
+        else log.info("Determined next " + actions.size() + " of " + candidates.size() + " actions: " + actions);
+        if (event.shouldCommit()) {
+            event.rootChildren = candidates.size();
+            event.chosenAction = actions.isEmpty() ? "" : actions.get(0).getClass().getSimpleName();
+            event.chosenVisits = chosen.isEmpty() ? 0 : chosen.get(0).getVisits();
+            event.orders = actions.size();
+            event.iterations = search.getIterationsOfLastSearch();
+            event.budget = budget;
+            event.commit();
+        }
+        lastActions = new SentActions(actions);
+        return actions;
+    }
+
+    // Uses the time until the engine executes the sent action to search the position it leads to
+    private void ponder() throws InterruptedException, ExecutionException {
+        if (searchConfig.ponderMillis <= 0) return;
+        search.ponder(System.currentTimeMillis() + searchConfig.ponderMillis, () -> lastActions.isExecuted(0) || lastActions.rejected || !isRunning);
     }
 
-    private boolean advanceSimulatedGameAndHeuristics(int numberOfPlayers, DiscoveredBoard[] gameBoards, UnitHeuristics[] unitHeuristics, Empire simulatedGameState) {
+    private boolean advanceSimulatedGameAndHeuristics(SimulationState state, long millis) {
         try {
-            simulatedGameState.advance(executionTime);
+            state.advance(millis);
         } catch (ActionException e) {
             log.info(e.getMessage());
             var cause = e.getCause();
             if (cause != null) log.info(cause.getMessage());
             return false;
         }
-
-        for (int i = 0; i < numberOfPlayers; i++) {
-            unitHeuristics[i].advance(simulatedGameState, executionTime);
-            gameBoards[i].advance(executionTime, simulatedGameState, unitHeuristics[i]);
-        }
         return true;
     }
 
-    private void applyLastAction(EmpireEvent lastAction, int numberOfPlayers, DiscoveredBoard[] gameBoards, UnitHeuristics[] unitHeuristics, Empire simulatedGameState) {
-        if (lastAction == null || !simulatedGameState.isValidAction(lastAction, playerId)) return;
-        simulatedGameState.scheduleActionEvent(new GameActionEvent<>(playerId, lastAction, simulatedGameState.getGameClock().getGameTimeMs() + 1));
-        for (int i = 0; i < numberOfPlayers; i++) {
-            unitHeuristics[i].apply(simulatedGameState, lastAction);
-            gameBoards[i].apply(simulatedGameState, lastAction);
+    // Applies the sent actions the game does not contain yet, returns false if one of them is not valid anymore
+    private boolean applyLastActions(SimulationState state) {
+        var sent = lastActions;
+        var valid = true;
+        for (int i = 0; i < sent.actions.size(); i++) {
+            if (sent.isExecuted(i)) continue;
+            var action = sent.actions.get(i);
+            if (state.game.isValidAction(action, playerId)) state.apply(playerId, action);
+            else valid = false;
         }
+        return valid;
     }
 }
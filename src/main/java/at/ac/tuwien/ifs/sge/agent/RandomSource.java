@@ -0,0 +1,64 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Random;
+
+// xoshiro256** generator for one worker. Unlike java.util.Random it is not thread safe and has no atomic seed, so it
+// must not be shared between threads. Every iteration of the search starts a stream that only depends on the seed,
+// the worker, the decision and the iteration, so a fixed seed reproduces a search on the same number of threads.
+// Extends Random so that it can be passed to everything that draws random numbers.
+public class RandomSource extends Random {
+    private final long workerSeed;
+    private long s0, s1, s2, s3;
+
+    public RandomSource(long seed, int worker) {
+        super(0);
+        this.workerSeed = StateHash.mix(seed ^ StateHash.mix(worker + 1L));
+        startStream(0, 0);
+    }
+
+    // Resets the generator to the stream of the given iteration of the given decision, does not allocate
+    public void startStream(long decision, long iteration) {
+        setSeed(workerSeed ^ StateHash.mix(decision * 0x9E3779B97F4A7C15L + iteration));
+    }
+
+    // Also called by the constructor of Random
+    @Override
+    public void setSeed(long seed) {
+        s0 = splitMix(seed);
+        s1 = splitMix(s0);
+        s2 = splitMix(s1);
+        s3 = splitMix(s2);
+    }
+
+    @Override
+    public long nextLong() {
+        var result = Long.rotateLeft(s1 * 5, 7) * 9;
+        var t = s1 << 17;
+        s2 ^= s0;
+        s3 ^= s1;
+        s1 ^= s2;
+        s0 ^= s3;
+        s2 ^= t;
+        s3 = Long.rotateLeft(s3, 45);
+        return result;
+    }
+
+    @Override
+    protected int next(int bits) {
+        return (int) (nextLong() >>> (64 - bits));
+    }
+
+    @Override
+    public float nextFloat() {
+        return (nextLong() >>> 40) * 0x1.0p-24f;
+    }
+
+    @Override
+    public double nextDouble() {
+        return (nextLong() >>> 11) * 0x1.0p-53;
+    }
+
+    private static long splitMix(long state) {
+        return StateHash.mix(state + 0x9E3779B97F4A7C15L);
+    }
+}
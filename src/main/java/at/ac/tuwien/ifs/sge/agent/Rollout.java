@@ -0,0 +1,119 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Random;
+
+import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
+
+// Plays a state forward with heuristically weighted random actions and determines the winner
+public class Rollout {
+    public static final int ABORTED = -1;
+
+    public static class Results {
+        public int visits;
+        public int wins;
+    }
+
+    // Runs rolloutsPerLeaf rollouts with the model of the config of the context. The state is only built once, every
+    // rollout but the last one plays a copy of it. The engine rollouts only copy the game, the heuristics and boards are
+    // reverted with an undo log. If the state already records, the rollouts record to its log and the caller reverts
+    // them with the state. The state must not be used afterwards
+    public static Results simulate(SearchContext context, SimulationState state, int playerId, Random random, int simulationDepth, long timeOfNextDecision) {
+        var results = new Results();
+        var rollouts = context.config.rolloutsPerLeaf;
+        var radetzkyPlayerId = context.radetzkyPlayerId;
+        var telemetry = context.telemetry;
+        var start = telemetry == null ? 0 : System.nanoTime();
+        var abstractState = context.config.rolloutModel == SearchConfig.RolloutModel.ABSTRACT ? AbstractRollout.of(state) : null;
+        var undoLog = state.getUndoLog();
+        var ownsLog = undoLog == null && abstractState == null && rollouts > 1;
+        if (ownsLog) {
+            undoLog = UndoLog.get();
+            state.setUndoLog(undoLog);
+        }
+        var mark = undoLog == null ? 0 : undoLog.mark();
+        for (int i = 0; i < rollouts; i++) {
+            if (i > 0 && System.currentTimeMillis() >= timeOfNextDecision) break;
+            var isLast = i == rollouts - 1;
+            int plies;
+            int winner;
+            if (abstractState != null) {
+                var rollout = isLast ? abstractState : abstractState.copy();
+                plies = rollout.play(playerId, random, simulationDepth, timeOfNextDecision, context.executionTime);
+                if (telemetry != null) start = telemetry.record(SearchTelemetry.Phase.ROLLOUT, start);
+                winner = rollout.evaluate(playerId, radetzkyPlayerId);
+            } else {
+                if (isLast && ownsLog) state.setUndoLog(null); // the last rollout may change the state for good
+                var rolloutState = isLast ? state : state.copyGame();
+                plies = play(rolloutState, playerId, random, simulationDepth, timeOfNextDecision, context.executionTime);
+                if (telemetry != null) start = telemetry.record(SearchTelemetry.Phase.ROLLOUT, start);
+                // todo maybe somehow add heuristic gained in the simulation to the heuristic value of the node, if the win counter does not reflect that gained knowledge
+                winner = plies == ABORTED ? ABORTED : evaluate(rolloutState, playerId, radetzkyPlayerId);
+                if (!isLast && undoLog != null) undoLog.revert(mark);
+            }
+            if (telemetry != null) {
+                start = telemetry.record(SearchTelemetry.Phase.EVALUATION, start);
+                if (plies != ABORTED) telemetry.recordRolloutDepth(plies);
+            }
+            if (winner == ABORTED) continue;
+            results.visits++;
+            if (winner == radetzkyPlayerId) results.wins++;
+        }
+        if (ownsLog) state.setUndoLog(null); // the last rollout is skipped when the time is up
+        return results;
+    }
+
+    // Returns the number of plies played, or ABORTED if the rollout can not be evaluated
+    public static int play(SimulationState state, int playerId, Random random, int simulationDepth, long timeOfNextDecision, int executionTime) {
+        var event = new RolloutEvent();
+        event.begin();
+        var depth = 0;
+        var plies = 0;
+        var numberOfPlayers = state.getNumberOfPlayers();
+        var game = state.game;
+        var currentPlayer = playerId;
+        try {
+            while (!game.isGameOver() && depth++ <= simulationDepth && System.currentTimeMillis() < timeOfNextDecision) {
+                var possibleActions = game.getPossibleActions(currentPlayer);
+                if (possibleActions.size() > 0) {
+                    var nextAction = EventHeuristics.selectBestRandomly(random, game, state.getCityIndex(), possibleActions, state.discoveredBoards[currentPlayer]);
+                    if (nextAction != null) {
+                        state.apply(currentPlayer, nextAction);
+                    }
+                }
+                state.advance(executionTime);
+                currentPlayer = (currentPlayer + 1) % numberOfPlayers;
+                plies++;
+            }
+        } catch (ActionException e) {
+            if (event.shouldCommit()) event.finish(plies, RolloutEvent.ACTION_EXCEPTION, false);
+            if (e.getMessage().contains("produce unit with id ")) return ABORTED; // happens when a unit is produced, but the occupying unit leaves the city in the meantime
+            return plies;
+        }
+        if (event.shouldCommit()) event.finish(plies, RolloutEvent.getTermination(game.isGameOver(), plies, simulationDepth), false);
+        return plies;
+    }
+
+    public static int evaluate(SimulationState state, int playerId, int radetzkyPlayerId) {
+        var gameState = state.game;
+        var discoveredBoard = state.discoveredBoards;
+        var unitHeuristics = state.unitHeuristics;
+        int bestPlayerId = 0;
+        float myPerformance = Float.NEGATIVE_INFINITY;
+        float bestPerformance = EventHeuristics.calculatePostSimulation(bestPlayerId, gameState, discoveredBoard[bestPlayerId], unitHeuristics[bestPlayerId]);
+        if (bestPlayerId == playerId) {
+            myPerformance = bestPerformance;
+        }
+        for (int i = 1; i < gameState.getNumberOfPlayers(); i++) {
+            var current = EventHeuristics.calculatePostSimulation(i, gameState, discoveredBoard[i], unitHeuristics[i]);
+            if (i == playerId) {
+                myPerformance = current;
+            }
+            if (current > bestPerformance) {
+                bestPlayerId = i;
+            }
+        }
+        // best id and radetzky id might be different if best and radetzky are equally good
+        if (myPerformance == bestPerformance && playerId == radetzkyPlayerId) return radetzkyPlayerId;
+        return bestPlayerId;
+    }
+}
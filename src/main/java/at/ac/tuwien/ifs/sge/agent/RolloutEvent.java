@@ -0,0 +1,40 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// One rollout, from the state of the leaf until it stops, without the evaluation
+@Name("at.ac.tuwien.ifs.sge.agent.Rollout")
+@Label("Rollout")
+@Category({"Radetzky", "Search"})
+public class RolloutEvent extends jdk.jfr.Event {
+    public static final String GAME_OVER = "game over";
+    public static final String DEPTH_LIMIT = "depth limit";
+    public static final String DEADLINE = "deadline";
+    public static final String ACTION_EXCEPTION = "action exception";
+
+    @Label("Plies")
+    public int plies;
+
+    @Label("Termination")
+    public String termination;
+
+    @Label("Abstract")
+    public boolean abstractModel;
+
+    // The rollouts check for the end of the game first, then the depth and then the deadline
+    static String getTermination(boolean isGameOver, int plies, int simulationDepth) {
+        if (isGameOver) return GAME_OVER;
+        if (plies > simulationDepth) return DEPTH_LIMIT;
+        return DEADLINE;
+    }
+
+    // Only call if shouldCommit returns true
+    void finish(int plies, String termination, boolean abstractModel) {
+        this.plies = plies;
+        this.termination = termination;
+        this.abstractModel = abstractModel;
+        commit();
+    }
+}
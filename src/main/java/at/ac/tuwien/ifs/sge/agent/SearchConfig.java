@@ -0,0 +1,92 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+// Search settings, can be overridden with -Dradetzky.<name>=<value> when starting the agent
+public class SearchConfig {
+    public enum Parallelism {
+        ROOT, // every thread searches its own tree, the root statistics are merged
+        TREE // all threads search one shared tree
+    }
+
+    public enum RolloutModel {
+        ENGINE, // the rollouts play the Empire engine forward
+        ABSTRACT // the rollouts play a summary of the game forward, see AbstractRollout
+    }
+
+    public enum TreeLayout {
+        OBJECTS, // one GameNode per node
+        COMPACT // parallel primitive arrays, see CompactTree
+    }
+
+    public final int threads;
+    public final Parallelism parallelism;
+    public final int virtualLoss;
+    public final boolean treeReuse;
+    public final float reuseDecay; // factor for the statistics of a reused subtree
+    public final boolean adaptiveBudget;
+    public final int maxBudget; // ms an adaptive budget may grow to for many actions or a close choice
+    public final int maxNodes;
+    public final TreeLayout treeLayout;
+    public final int transpositionTableSize; // 0 disables the table
+    // progressive widening, a node may have at most wideningConstant * visits^wideningExponent children. 0 expands every action
+    public final float wideningConstant;
+    public final float wideningExponent;
+    public final RolloutModel rolloutModel;
+    public final int rolloutsPerLeaf; // rollouts that start from one built leaf state
+    public final long seed;
+    public final String telemetryFile; // empty disables telemetry
+    public final int ponderMillis; // how long the kept subtree is searched while the sent action is pending, 0 disables pondering
+    public final boolean factored; // one search per unit or city, their actions are sent together
+    public final int maxOrders; // actions that may be sent by one decision
+    public final long maxGameTime; // game time in ms at which the match ends, 0 if it is not known
+
+    private SearchConfig(int threads, Parallelism parallelism, int virtualLoss, boolean treeReuse, float reuseDecay, boolean adaptiveBudget, int maxBudget, int maxNodes, TreeLayout treeLayout, int transpositionTableSize,
+                         float wideningConstant, float wideningExponent, RolloutModel rolloutModel, int rolloutsPerLeaf, long seed, String telemetryFile,
+                         int ponderMillis, boolean factored, int maxOrders, long maxGameTime) {
+        this.threads = Math.max(1, threads);
+        this.parallelism = parallelism;
+        this.virtualLoss = virtualLoss;
+        this.treeReuse = treeReuse;
+        this.reuseDecay = reuseDecay;
+        this.adaptiveBudget = adaptiveBudget;
+        this.maxBudget = maxBudget;
+        this.maxNodes = maxNodes;
+        this.treeLayout = treeLayout;
+        this.transpositionTableSize = transpositionTableSize;
+        this.wideningConstant = wideningConstant;
+        this.wideningExponent = wideningExponent;
+        this.rolloutModel = rolloutModel;
+        this.rolloutsPerLeaf = Math.max(1, rolloutsPerLeaf);
+        this.seed = seed;
+        this.telemetryFile = telemetryFile;
+        this.ponderMillis = ponderMillis;
+        this.factored = factored;
+        this.maxOrders = Math.max(1, Math.min(64, maxOrders));
+        this.maxGameTime = Math.max(0, maxGameTime);
+    }
+
+    public static SearchConfig fromSystemProperties() {
+        var defaultThreads = Runtime.getRuntime().availableProcessors() - 1; // leave one core for the engine communication
+        return new SearchConfig(
+                Integer.getInteger("radetzky.threads", defaultThreads),
+                Parallelism.valueOf(System.getProperty("radetzky.parallelism", Parallelism.ROOT.name()).toUpperCase()),
+                Integer.getInteger("radetzky.virtualLoss", 1),
+                Boolean.parseBoolean(System.getProperty("radetzky.treeReuse", "true")),
+                Float.parseFloat(System.getProperty("radetzky.reuseDecay", ".5")),
+                Boolean.parseBoolean(System.getProperty("radetzky.adaptiveBudget", "true")),
+                Integer.getInteger("radetzky.maxBudget", 4000),
+                Integer.getInteger("radetzky.maxNodes", 50000),
+                TreeLayout.valueOf(System.getProperty("radetzky.tree", TreeLayout.OBJECTS.name()).toUpperCase()),
+                Integer.getInteger("radetzky.transpositionTableSize", 1 << 16),
+                Float.parseFloat(System.getProperty("radetzky.wideningConstant", "0")),
+                Float.parseFloat(System.getProperty("radetzky.wideningExponent", ".5")),
+                RolloutModel.valueOf(System.getProperty("radetzky.rollout", RolloutModel.ENGINE.name()).toUpperCase()),
+                Integer.getInteger("radetzky.rolloutsPerLeaf", 1),
+                Long.getLong("radetzky.seed", 0),
+                System.getProperty("radetzky.telemetry", ""),
+                Integer.getInteger("radetzky.ponderMillis", 500),
+                Boolean.parseBoolean(System.getProperty("radetzky.factored", "false")),
+                Integer.getInteger("radetzky.maxOrders", 8),
+                Long.getLong("radetzky.maxGameTime", 0)
+        );
+    }
+}
@@ -0,0 +1,40 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+// Everything the nodes of one search tree share
+public class SearchContext {
+    public final int executionTime;
+    public final int radetzkyPlayerId;
+    public final int numberOfPlayers;
+    public final SimulationState rootState;
+    public final GameStateCache stateCache;
+    public final int virtualLoss;
+    public final NodeBudget nodeBudget;
+    public final TranspositionTable transpositions; // null if disabled
+    public final SearchTelemetry telemetry; // null if disabled
+    public final SearchConfig config;
+    // The heuristics and boards each thread walks down the tree with, see beginWalk
+    private final ThreadLocal<SimulationState> walkingStates;
+
+    public SearchContext(int executionTime, int radetzkyPlayerId, SimulationState rootState, GameStateCache stateCache, int virtualLoss, NodeBudget nodeBudget, TranspositionTable transpositions,
+                         SearchTelemetry telemetry, SearchConfig config) {
+        this.executionTime = executionTime;
+        this.radetzkyPlayerId = radetzkyPlayerId;
+        this.numberOfPlayers = rootState.getNumberOfPlayers();
+        this.rootState = rootState;
+        this.stateCache = stateCache;
+        this.virtualLoss = virtualLoss;
+        this.nodeBudget = nodeBudget;
+        this.transpositions = transpositions;
+        this.telemetry = telemetry;
+        this.config = config;
+        this.walkingStates = ThreadLocal.withInitial(rootState::copy);
+    }
+
+    // A private copy of the root game on the heuristics and boards of this thread. They record their changes until the
+    // returned state is reverted, so only the game is copied per walk. One walk per thread at a time
+    public SimulationState beginWalk() {
+        var state = walkingStates.get().copyGame();
+        state.beginRecording(UndoLog.get());
+        return state;
+    }
+}
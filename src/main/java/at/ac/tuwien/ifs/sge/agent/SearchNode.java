@@ -0,0 +1,28 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.List;
+
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+
+// What a decision needs to know about a node, independent of how the tree is stored
+public interface SearchNode {
+    EmpireEvent getResponsibleAction();
+
+    int getVisits();
+
+    int getWins();
+
+    boolean isLeaf();
+
+    SearchNode getMostVisitedChild();
+
+    int getVisitLeadOfMostVisitedChild();
+
+    // Most visited first
+    List<SearchNode> getChildrenByVisits();
+
+    int getNumberOfChildren();
+
+    // Number of edges on the longest path down to a leaf
+    int getMaxDepth();
+}
@@ -0,0 +1,94 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Locale;
+
+// Where the search spends its time and what its trees look like. The workers record into histograms, after every
+// decision the shape of the tree is added and everything is appended to the file as one JSON line, then the
+// histograms start over. Disabled telemetry is null in the search context, so it only costs a null check.
+public class SearchTelemetry {
+    public enum Phase {
+        SELECTION,
+        EXPANSION, // includes building the state of the new node
+        REPLAY, // building the state of the selected node for the rollouts
+        ROLLOUT,
+        EVALUATION
+    }
+
+    private final Histogram[] phaseNanos = new Histogram[Phase.values().length];
+    private final Histogram rolloutDepths = new Histogram();
+    private final BufferedWriter writer;
+
+    private SearchTelemetry(BufferedWriter writer) {
+        this.writer = writer;
+        for (int i = 0; i < phaseNanos.length; i++) {
+            phaseNanos[i] = new Histogram();
+        }
+    }
+
+    // Appends to the given file, returns null if the file name is empty
+    public static SearchTelemetry open(String file) throws IOException {
+        if (file == null || file.isEmpty()) return null;
+        var writer = Files.newBufferedWriter(Path.of(file), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+        return new SearchTelemetry(writer);
+    }
+
+    // Records the time since start for the phase and returns the current time, so that phases can be chained
+    public long record(Phase phase, long startNanos) {
+        var now = System.nanoTime();
+        phaseNanos[phase.ordinal()].record(now - startNanos);
+        return now;
+    }
+
+    public void recordRolloutDepth(int plies) {
+        rolloutDepths.record(plies);
+    }
+
+    // Must be called after the workers of the search are done
+    public void onDecision(long decision, int iterations, long searchMillis, int nodes, SearchNode root) {
+        var json = new StringBuilder(1024);
+        json.append("{\"decision\":").append(decision)
+                .append(",\"time\":").append(System.currentTimeMillis())
+                .append(",\"searchMs\":").append(searchMillis)
+                .append(",\"iterations\":").append(iterations)
+                .append(",\"nodes\":").append(nodes)
+                .append(",\"maxDepth\":").append(root.getMaxDepth())
+                .append(",\"rootBranching\":").append(root.getNumberOfChildren());
+        var chosen = root.getMostVisitedChild();
+        var share = root.getVisits() > 0 && chosen != root ? chosen.getVisits() / (float) root.getVisits() : 0;
+        json.append(",\"chosenVisitShare\":").append(String.format(Locale.ROOT, "%.4f", share));
+        for (Phase phase : Phase.values()) {
+            json.append(",\"").append(phase.name().toLowerCase(Locale.ROOT)).append("Ns\":");
+            phaseNanos[phase.ordinal()].appendJson(json);
+            phaseNanos[phase.ordinal()].reset();
+        }
+        json.append(",\"rolloutDepth\":");
+        rolloutDepths.appendJson(json);
+        rolloutDepths.reset();
+        json.append('}');
+        write(json);
+    }
+
+    private synchronized void write(CharSequence line) {
+        try {
+            writer.append(line);
+            writer.newLine();
+            writer.flush();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+
+    public synchronized void close() {
+        try {
+            writer.close();
+        } catch (IOException e) {
+            e.printStackTrace();
+        }
+    }
+}
@@ -0,0 +1,10 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Random;
+
+public interface SearchTree {
+    SearchNode getRoot();
+
+    // One select, expand, simulate and back propagate cycle
+    void iterate(Random random, int simulationDepth, long timeOfNextDecision);
+}
@@ -0,0 +1,101 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredBoard;
+import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
+import at.ac.tuwien.ifs.sge.core.engine.communication.events.GameActionEvent;
+import at.ac.tuwien.ifs.sge.core.game.exception.ActionException;
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+
+public class SimulationState {
+    public final Empire game;
+    public final UnitHeuristics[] unitHeuristics;
+    public final DiscoveredBoard[] discoveredBoards;
+    private volatile CityIndex cityIndex; // shared with the copies until they discover a city
+    private UndoLog undoLog; // set while the heuristics and boards record their changes
+    private int undoMark;
+
+    public SimulationState(Empire game, UnitHeuristics[] unitHeuristics, DiscoveredBoard[] discoveredBoards) {
+        this(game, unitHeuristics, discoveredBoards, null);
+    }
+
+    private SimulationState(Empire game, UnitHeuristics[] unitHeuristics, DiscoveredBoard[] discoveredBoards, CityIndex cityIndex) {
+        this.game = game;
+        this.unitHeuristics = unitHeuristics;
+        this.discoveredBoards = discoveredBoards;
+        this.cityIndex = cityIndex;
+    }
+
+    public SimulationState copy() {
+        return new SimulationState((Empire) game.copy(), UnitHeuristics.copy(unitHeuristics), DiscoveredBoard.copy(discoveredBoards), cityIndex);
+    }
+
+    // A state on a copy of the game that shares the heuristics and boards with this state
+    public SimulationState copyGame() {
+        return new SimulationState((Empire) game.copy(), unitHeuristics, discoveredBoards, cityIndex);
+    }
+
+    // A state on the same game with its own copies of the heuristics and boards, for states that outlive a walk
+    public SimulationState detach() {
+        return new SimulationState(game, UnitHeuristics.copy(unitHeuristics), DiscoveredBoard.copy(discoveredBoards), cityIndex);
+    }
+
+    // The index of the cities known in this game. Also called on states that must only be read, the index is
+    // immutable, so threads that rebuild it at the same time just build the same index
+    public CityIndex getCityIndex() {
+        var index = cityIndex;
+        if (index == null || !index.isComplete(game)) {
+            index = CityIndex.of(game);
+            cityIndex = index;
+        }
+        return index;
+    }
+
+    // Records the changes of the heuristics and boards to the log, null stops recording. The game can not be reverted,
+    // it has to be copied
+    public void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+        for (int i = 0; i < unitHeuristics.length; i++) {
+            unitHeuristics[i].setUndoLog(undoLog);
+            discoveredBoards[i].setUndoLog(undoLog);
+        }
+    }
+
+    public UndoLog getUndoLog() {
+        return undoLog;
+    }
+
+    // Records the changes of the heuristics and boards until revert, so that they can be reused by the next walk
+    public void beginRecording(UndoLog undoLog) {
+        undoMark = undoLog.mark();
+        setUndoLog(undoLog);
+    }
+
+    // Reverts the heuristics and boards to where beginRecording was called, does nothing if this state does not record
+    public void revert() {
+        var log = undoLog;
+        if (log == null) return;
+        setUndoLog(null);
+        log.revert(undoMark);
+    }
+
+    public int getNumberOfPlayers() {
+        return unitHeuristics.length;
+    }
+
+    public void apply(int playerId, EmpireEvent action) {
+        game.scheduleActionEvent(new GameActionEvent<>(playerId, action, game.getGameClock().getGameTimeMs() + 1));
+        for (int i = 0; i < unitHeuristics.length; i++) {
+            unitHeuristics[i].apply(game, action);
+            discoveredBoards[i].apply(game, action);
+        }
+    }
+
+    public void advance(long millis) throws ActionException {
+        game.advance(millis);
+        for (int i = 0; i < unitHeuristics.length; i++) {
+            unitHeuristics[i].advance(game, millis);
+            discoveredBoards[i].advance(millis, game, unitHeuristics[i]);
+        }
+    }
+}
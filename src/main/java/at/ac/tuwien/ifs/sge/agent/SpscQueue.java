@@ -0,0 +1,35 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+// Unbounded lock-free queue for exactly one producing and one consuming thread. Offering and polling never wait and
+// take constant time. The volatile next link publishes a node together with its value.
+public class SpscQueue<T> {
+    private static class Node<T> {
+        private T value;
+        private volatile Node<T> next;
+    }
+
+    private Node<T> head; // only used by the consumer, its value has already been taken
+    private Node<T> tail; // only used by the producer
+
+    public SpscQueue() {
+        head = tail = new Node<>();
+    }
+
+    // Must only be called by the producer
+    public void offer(T value) {
+        var node = new Node<T>();
+        node.value = value;
+        tail.next = node;
+        tail = node;
+    }
+
+    // Must only be called by the consumer, returns null if the queue is empty
+    public T poll() {
+        var next = head.next;
+        if (next == null) return null;
+        var value = next.value;
+        next.value = null;
+        head = next;
+        return value;
+    }
+}
@@ -0,0 +1,48 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Map;
+
+import at.ac.tuwien.ifs.sge.game.empire.map.Position;
+import at.ac.tuwien.ifs.sge.game.empire.model.map.EmpireCity;
+import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
+
+// Zobrist style hash of the parts of a state that matter to the search. Every feature gets a pseudo random key and
+// the keys are summed up, so the hash does not depend on the order in which units or cities are visited.
+// Summing instead of xor-ing keeps two equal units on the same tile from cancelling each other out.
+public class StateHash {
+    private static final long CLOCK_SALT = 0x9E3779B97F4A7C15L;
+    private static final long UNIT_SALT = 0xC2B2AE3D27D4EB4FL;
+    private static final long CITY_SALT = 0x165667B19E3779F9L;
+    public static final long PRODUCTION_SALT = 0xD6E8FEB86659FD93L;
+
+    public static long of(SimulationState state, long clockBucketMs) {
+        var game = state.game;
+        var hash = mix(CLOCK_SALT ^ game.getGameClock().getGameTimeMs() / clockBucketMs);
+        for (int playerId = 0; playerId < state.getNumberOfPlayers(); playerId++) {
+            var units = game.getUnitsByPlayer(playerId);
+            for (int i = 0; i < units.size(); i++) {
+                hash += unitKey(playerId, units.get(i));
+            }
+            hash += state.unitHeuristics[playerId].getProductionHash();
+        }
+        for (Map.Entry<Position, EmpireCity> entry : game.getCitiesByPosition().entrySet()) {
+            hash += mix(CITY_SALT ^ positionKey(entry.getKey()) ^ ((long) entry.getValue().getOccupants().size() << 40));
+        }
+        return hash == 0 ? 1 : hash; // 0 marks nodes without hash
+    }
+
+    private static long unitKey(int playerId, EmpireUnit unit) {
+        return mix(UNIT_SALT ^ positionKey(unit.getPosition()) ^ ((long) unit.getHp() << 32) ^ ((long) playerId << 48) ^ ((long) unit.getUnitTypeId() << 56));
+    }
+
+    public static long positionKey(Position position) {
+        return ((long) position.getX() << 16) | (position.getY() & 0xFFFF);
+    }
+
+    // finalizer of splitmix64
+    public static long mix(long z) {
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+        return z ^ (z >>> 31);
+    }
+}
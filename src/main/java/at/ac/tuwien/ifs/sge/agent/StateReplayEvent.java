@@ -0,0 +1,23 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import jdk.jfr.Category;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+// Building the state of a node by replaying the actions from the nearest cached ancestor
+@Name("at.ac.tuwien.ifs.sge.agent.StateReplay")
+@Label("State Replay")
+@Category({"Radetzky", "Search"})
+public class StateReplayEvent extends jdk.jfr.Event {
+    @Label("Depth")
+    public int depth;
+
+    @Label("Replayed Steps")
+    public int steps; // counted while replaying
+
+    // Only call if shouldCommit returns true
+    void finish(int depth) {
+        this.depth = depth;
+        commit();
+    }
+}
@@ -0,0 +1,66 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+// Decides how long a decision may take, when a search can stop early and when a close choice gets more time
+public class TimeManager {
+    private static final long MIN_BUDGET = 200;
+    private static final int ITERATIONS_PER_ACTION = 30; // visits every root action should get on average
+    private static final int STOP_CHECK_INTERVAL = 16; // iterations between two checks of the stop early rule
+    private static final int MIN_DECISIONS_LEFT = 10; // a decision may use at most this share of the remaining game time
+    private static final float CLOSE_LEAD = .05f; // a choice is close if the lead is below this share of the root visits
+    private static final long EXTENSION = 250; // ms a close choice gets at a time
+    private static final float SMOOTHING = .3f;
+    private final boolean adaptive;
+    private final long defaultBudget;
+    private final long maxBudget;
+    private final long maxGameTime; // 0 if not known
+    private volatile float iterationsPerMs; // that go into one root, smoothed over the last decisions
+    private volatile long longestBudget; // of the current decision, including extensions
+
+    public TimeManager(boolean adaptive, long defaultBudget, long maxBudget, long maxGameTime) {
+        this.adaptive = adaptive;
+        this.defaultBudget = defaultBudget;
+        this.maxBudget = Math.max(defaultBudget, maxBudget);
+        this.maxGameTime = maxGameTime;
+        this.longestBudget = defaultBudget;
+    }
+
+    // Enough time for every root action to get its visits, up to the max budget, but never more than a share of the
+    // game time that is left. The default budget is used until the iterations per ms are known
+    public long getBudget(int branchingFactor, long gameTimeMs) {
+        if (!adaptive) return defaultBudget;
+        var longest = maxBudget;
+        if (maxGameTime > 0) longest = Math.max(MIN_BUDGET, Math.min(longest, (maxGameTime - gameTimeMs) / MIN_DECISIONS_LEFT));
+        longestBudget = longest;
+        var budget = iterationsPerMs > 0 ? (long) (branchingFactor * ITERATIONS_PER_ACTION / iterationsPerMs) : defaultBudget;
+        return Math.max(MIN_BUDGET, Math.min(longest, budget));
+    }
+
+    // Returns a later deadline while the most visited root child leads by too little, up to the longest budget of the
+    // decision. The root was played forward by the budget, the actions of an extended search are sent a bit later
+    public long extendDeadline(SearchNode root, long startTime, long deadline) {
+        if (!adaptive || root.isLeaf()) return deadline;
+        var latest = startTime + longestBudget;
+        if (deadline >= latest) return deadline;
+        if (root.getVisitLeadOfMostVisitedChild() >= CLOSE_LEAD * root.getVisits()) return deadline;
+        return Math.min(latest, deadline + EXTENSION);
+    }
+
+    // The iterations are the ones that went into one root, the threads that share a tree all count
+    public void onSearchFinished(int iterationsPerRoot, long elapsedMs) {
+        if (elapsedMs <= 0) return;
+        var measured = (float) iterationsPerRoot / elapsedMs;
+        if (iterationsPerMs <= 0) iterationsPerMs = measured;
+        else iterationsPerMs = SMOOTHING * measured + (1 - SMOOTHING) * iterationsPerMs;
+    }
+
+    // Stop once the second most visited root child cannot overtake the most visited one in the remaining time,
+    // the workers are the number of threads that add visits to this root
+    public boolean canStopEarly(SearchNode root, int iterations, int workers, long startTime, long timeOfNextDecision) {
+        if (!adaptive || iterations % STOP_CHECK_INTERVAL != 0 || root.isLeaf()) return false;
+        var now = System.currentTimeMillis();
+        var elapsed = now - startTime;
+        if (elapsed < MIN_BUDGET) return false;
+        var remainingIterations = (float) iterations / elapsed * (timeOfNextDecision - now) * workers;
+        return root.getVisitLeadOfMostVisitedChild() > remainingIterations;
+    }
+}
@@ -0,0 +1,81 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+// Fixed size, lock free table of visits and wins per state hash, shared by all nodes that reach the same state.
+// Every hash may be stored in one of two neighbouring slots, a new hash replaces the less visited entry of the two.
+// Entries are lossy: a replacement that races with an update may drop or misattribute a few visits.
+public class TranspositionTable {
+    private static final long VISIT = 1L << 32; // visits are kept in the upper, wins in the lower 32 bits
+    private final int mask;
+    private final AtomicLongArray keys;
+    private final AtomicLongArray statistics;
+    private final LongAdder lookups = new LongAdder();
+    private final LongAdder hits = new LongAdder();
+
+    public TranspositionTable(int size) {
+        var capacity = Integer.highestOneBit(Math.max(2, size));
+        this.mask = capacity - 1;
+        this.keys = new AtomicLongArray(capacity);
+        this.statistics = new AtomicLongArray(capacity);
+    }
+
+    public static int getVisits(long statistics) {
+        return (int) (statistics >>> 32);
+    }
+
+    public static int getWins(long statistics) {
+        return (int) statistics;
+    }
+
+    // Returns the packed statistics of the hash, or 0 if it is not stored
+    public long get(long hash) {
+        var slot = index(hash);
+        if (keys.get(slot) == hash) return statistics.get(slot);
+        slot ^= 1;
+        if (keys.get(slot) == hash) return statistics.get(slot);
+        return 0;
+    }
+
+    // Called once for every new node, to measure how often the search reaches known states
+    public void lookup(long hash) {
+        lookups.increment();
+        if (get(hash) != 0) hits.increment();
+    }
+
+    public void record(long hash, int visits, int wins) {
+        var delta = visits * VISIT + wins;
+        var first = index(hash);
+        var second = first ^ 1;
+        if (keys.get(first) == hash) {
+            statistics.getAndAdd(first, delta);
+            return;
+        }
+        if (keys.get(second) == hash) {
+            statistics.getAndAdd(second, delta);
+            return;
+        }
+        var victim = getVisits(statistics.get(first)) <= getVisits(statistics.get(second)) ? first : second;
+        var replaced = keys.get(victim);
+        if (keys.compareAndSet(victim, replaced, hash)) statistics.set(victim, delta);
+    }
+
+    // Halves all statistics, so that entries of old decisions can be replaced eventually
+    public void age() {
+        for (int i = 0; i <= mask; i++) {
+            var current = statistics.get(i);
+            statistics.compareAndSet(i, current, ((long) (getVisits(current) >>> 1) << 32) | (getWins(current) >>> 1));
+        }
+    }
+
+    public float getHitRate() {
+        var total = lookups.sum();
+        if (total == 0) return 0;
+        return (float) hits.sum() / total;
+    }
+
+    private int index(long hash) {
+        return (int) (hash ^ (hash >>> 32)) & mask;
+    }
+}
@@ -0,0 +1,73 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import java.util.Arrays;
+
+// Records how to revert the changes to the heuristics and boards of a state, so that they can be played forward and
+// reset without copying them. The entries are kept in parallel arrays, recording does not allocate in steady state.
+// One log per thread, see get
+public class UndoLog {
+    private static final int INITIAL_CAPACITY = 64;
+    private static final ThreadLocal<UndoLog> LOGS = ThreadLocal.withInitial(UndoLog::new);
+
+    public interface Undoable {
+        // Reverts one change, the arguments are the ones that were recorded for it
+        void undo(int field, long oldValue, Object key, Object oldReference);
+    }
+
+    private Undoable[] targets = new Undoable[INITIAL_CAPACITY];
+    private int[] fields = new int[INITIAL_CAPACITY];
+    private long[] oldValues = new long[INITIAL_CAPACITY];
+    private Object[] keys = new Object[INITIAL_CAPACITY];
+    private Object[] oldReferences = new Object[INITIAL_CAPACITY];
+    private int size = 0;
+
+    public static UndoLog get() {
+        return LOGS.get();
+    }
+
+    public int mark() {
+        return size;
+    }
+
+    public void record(Undoable target, int field, long oldValue) {
+        record(target, field, oldValue, null, null);
+    }
+
+    public void record(Undoable target, int field, float oldValue) {
+        record(target, field, Float.floatToRawIntBits(oldValue), null, null);
+    }
+
+    public void record(Undoable target, int field, long oldValue, Object key, Object oldReference) {
+        if (size == targets.length) grow();
+        targets[size] = target;
+        fields[size] = field;
+        oldValues[size] = oldValue;
+        keys[size] = key;
+        oldReferences[size] = oldReference;
+        size++;
+    }
+
+    // Reverts all changes recorded after the mark, latest first
+    public void revert(int mark) {
+        while (size > mark) {
+            size--;
+            targets[size].undo(fields[size], oldValues[size], keys[size], oldReferences[size]);
+            targets[size] = null;
+            keys[size] = null;
+            oldReferences[size] = null;
+        }
+    }
+
+    public static float toFloat(long oldValue) {
+        return Float.intBitsToFloat((int) oldValue);
+    }
+
+    private void grow() {
+        var capacity = targets.length * 2;
+        targets = Arrays.copyOf(targets, capacity);
+        fields = Arrays.copyOf(fields, capacity);
+        oldValues = Arrays.copyOf(oldValues, capacity);
+        keys = Arrays.copyOf(keys, capacity);
+        oldReferences = Arrays.copyOf(oldReferences, capacity);
+    }
+}
@@ -1,5 +1,6 @@
 package at.ac.tuwien.ifs.sge.agent.discoveredBoard;
 
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.UnitStats;
 import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
@@ -20,6 +21,9 @@ public interface DiscoveredBoard {
 
     int getPlayerId();
 
+    // Changes are recorded to the log until it is set to null. Copies do not record
+    void setUndoLog(UndoLog undoLog);
+
     default float calculateHeuristics(Empire gameState, EmpireEvent empireEvent) {
         if (empireEvent instanceof MovementStartOrder movementStartOrder) {
             var unit = gameState.getUnit(movementStartOrder.getUnitId());
@@ -0,0 +1,173 @@
+package at.ac.tuwien.ifs.sge.agent.discoveredBoard;
+
+import java.util.Arrays;
+
+import at.ac.tuwien.ifs.sge.game.empire.exception.EmpireMapException;
+import at.ac.tuwien.ifs.sge.game.empire.map.EmpireMap;
+import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
+
+// Which tiles of the map are discovered, one bit per tile in a bitset per row. The discovered tiles in a field of view
+// are counted with a few bit counts per row. Instances are never modified, so all copies of a board can share them,
+// a new instance shares the rows that did not change.
+public class DiscoveredTiles {
+    private final int width, height;
+    private final long[][] rows;
+    private final int discoveredCount;
+
+    private DiscoveredTiles(int width, int height, long[][] rows, int discoveredCount) {
+        this.width = width;
+        this.height = height;
+        this.rows = rows;
+        this.discoveredCount = discoveredCount;
+    }
+
+    public static DiscoveredTiles scan(EmpireMap map) {
+        var size = map.getMapSize();
+        var width = size.getWidth();
+        var height = size.getHeight();
+        var rows = new long[height][(width + 63) >>> 6];
+        var count = 0;
+        try {
+            for (int y = 0; y < height; y++) {
+                for (int x = 0; x < width; x++) {
+                    if (map.getTile(x, y) == null) continue;
+                    set(rows[y], x);
+                    count++;
+                }
+            }
+        } catch (EmpireMapException e) {
+            e.printStackTrace();
+        }
+        return new DiscoveredTiles(width, height, rows, count);
+    }
+
+    // No tile discovered yet, the tiles are added with discover
+    static DiscoveredTiles empty(int width, int height) {
+        return new DiscoveredTiles(width, height, new long[height][(width + 63) >>> 6], 0);
+    }
+
+    // Only looks at the tiles the given units can see, returns this if none of them are newly discovered
+    public DiscoveredTiles update(EmpireMap map, Iterable<EmpireUnit> units) {
+        var changes = new Changes();
+        try {
+            for (EmpireUnit unit : units) {
+                var position = unit.getPosition();
+                var fov = unit.getFov();
+                var fromX = Math.max(0, position.getX() - fov);
+                var toX = Math.min(width - 1, position.getX() + fov);
+                var fromY = Math.max(0, position.getY() - fov);
+                var toY = Math.min(height - 1, position.getY() + fov);
+                for (int y = fromY; y <= toY; y++) {
+                    for (int x = fromX; x <= toX; x++) {
+                        if (changes.isDiscovered(x, y)) continue;
+                        if (map.getTile(x, y) == null) continue;
+                        changes.discover(x, y);
+                    }
+                }
+            }
+        } catch (EmpireMapException e) {
+            e.printStackTrace();
+        }
+        return changes.build();
+    }
+
+    // The tiles a unit would see at (x, y), for simulated moves that have no vision updates. Returns this if all of
+    // them are already discovered
+    public DiscoveredTiles discover(int x, int y, int radius) {
+        var changes = new Changes();
+        var fromX = Math.max(0, x - radius);
+        var toX = Math.min(width - 1, x + radius);
+        var fromY = Math.max(0, y - radius);
+        var toY = Math.min(height - 1, y + radius);
+        for (int row = fromY; row <= toY; row++) {
+            for (int column = fromX; column <= toX; column++) {
+                if (!changes.isDiscovered(column, row)) changes.discover(column, row);
+            }
+        }
+        return changes.build();
+    }
+
+    public boolean isSameAs(DiscoveredTiles other) {
+        if (other == this) return true;
+        if (other.discoveredCount != discoveredCount || other.width != width || other.height != height) return false;
+        for (int y = 0; y < height; y++) {
+            if (rows[y] != other.rows[y] && !Arrays.equals(rows[y], other.rows[y])) return false;
+        }
+        return true;
+    }
+
+    public int getDiscoveredCount() {
+        return discoveredCount;
+    }
+
+    public boolean isDiscovered(int x, int y) {
+        if (x < 0 || y < 0 || x >= width || y >= height) return false;
+        return isSet(rows[y], x);
+    }
+
+    // Number of undiscovered tiles in the square of the given radius around (x, y), the parts outside of the map are ignored
+    public int countUndiscovered(int x, int y, int radius) {
+        var fromX = Math.max(0, x - radius);
+        var toX = Math.min(width, x + radius + 1);
+        var fromY = Math.max(0, y - radius);
+        var toY = Math.min(height, y + radius + 1);
+        if (fromX >= toX || fromY >= toY) return 0;
+        var discoveredInside = 0;
+        for (int row = fromY; row < toY; row++) {
+            discoveredInside += countSet(rows[row], fromX, toX);
+        }
+        return (toX - fromX) * (toY - fromY) - discoveredInside;
+    }
+
+    // Collects newly discovered tiles, a row is copied when it changes for the first time
+    private class Changes {
+        private long[][] changedRows;
+        private boolean[] copied;
+        private int count = discoveredCount;
+
+        boolean isDiscovered(int x, int y) {
+            return isSet(changedRows == null ? rows[y] : changedRows[y], x);
+        }
+
+        void discover(int x, int y) {
+            if (changedRows == null) {
+                changedRows = rows.clone();
+                copied = new boolean[height];
+            }
+            if (!copied[y]) {
+                changedRows[y] = changedRows[y].clone();
+                copied[y] = true;
+            }
+            set(changedRows[y], x);
+            count++;
+        }
+
+        DiscoveredTiles build() {
+            if (changedRows == null) return DiscoveredTiles.this;
+            return new DiscoveredTiles(width, height, changedRows, count);
+        }
+    }
+
+    // Number of set bits in [fromX, toX)
+    private static int countSet(long[] row, int fromX, int toX) {
+        var last = toX - 1;
+        var firstWord = fromX >>> 6;
+        var lastWord = last >>> 6;
+        var count = 0;
+        for (int word = firstWord; word <= lastWord; word++) {
+            var bits = row[word];
+            if (word == firstWord) bits &= -1L << fromX;
+            if (word == lastWord) bits &= -1L >>> (63 - (last & 63));
+            count += Long.bitCount(bits);
+        }
+        return count;
+    }
+
+    private static boolean isSet(long[] row, int x) {
+        return (row[x >>> 6] & (1L << x)) != 0;
+    }
+
+    private static void set(long[] row, int x) {
+        row[x >>> 6] |= 1L << x;
+    }
+}
@@ -1,5 +1,6 @@
 package at.ac.tuwien.ifs.sge.agent.discoveredBoard;
 
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.UnitStats;
 import at.ac.tuwien.ifs.sge.agent.unitHeuristics.EnemyUnitHeuristics;
 import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
@@ -8,7 +9,8 @@ import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.Movement
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
 import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
 
-public class EnemyDiscoveredBoard implements DiscoveredBoard {
+public class EnemyDiscoveredBoard implements DiscoveredBoard, UndoLog.Undoable {
+    private static final int DISCOVERED_BOARD_RATIO = 0, ESTIMATED_DISCOVERED_CITIES = 1;
 
     private final int playerId;
     private final int tilesCount;
@@ -19,6 +21,7 @@ public class EnemyDiscoveredBoard implements DiscoveredBoard {
     private int knownDiscoveredCities;
 
     private final int estimatedNumberOfCities;
+    private UndoLog undoLog;
 
     private EnemyDiscoveredBoard(Empire game, int playerId, int tilesCount) {
         this.playerId = playerId;
@@ -76,8 +79,9 @@ public class EnemyDiscoveredBoard implements DiscoveredBoard {
     public void apply(Empire gameState, EmpireEvent nextAction) {
         if (nextAction instanceof MovementStartOrder movementStartOrder) {
             var unit = gameState.getUnit(movementStartOrder.getUnitId());
-            if (unit.getPlayerId() != playerId) return;
+            if (unit == null || unit.getPlayerId() != playerId) return;
             var newlyDiscoveredTiles = getNumberOfNewUndiscoveredTiles(gameState, movementStartOrder, unit);
+            if (undoLog != null) undoLog.record(this, DISCOVERED_BOARD_RATIO, discoveredBoardRatio);
             discoveredBoardRatio += ratioPerTile * newlyDiscoveredTiles;
         }
     }
@@ -86,6 +90,10 @@ public class EnemyDiscoveredBoard implements DiscoveredBoard {
     public void advance(long millis, Empire gameState, UnitHeuristics unitHeuristics) {
         var capacity = unitHeuristics.getTilesDiscoveryCapacity();
         var seconds = millis / 1e3f;
+        if (undoLog != null) {
+            undoLog.record(this, DISCOVERED_BOARD_RATIO, discoveredBoardRatio);
+            undoLog.record(this, ESTIMATED_DISCOVERED_CITIES, estimatedDiscoveredCities);
+        }
         discoveredBoardRatio += (1f - discoveredBoardRatio) * (ratioPerTile * capacity * seconds * EnemyUnitHeuristics.ArtificialInefficiencyFactor);
         estimatedDiscoveredCities = (int) (discoveredBoardRatio * estimatedNumberOfCities * EnemyUnitHeuristics.ArtificialInefficiencyFactor);
     }
@@ -100,4 +108,15 @@ public class EnemyDiscoveredBoard implements DiscoveredBoard {
     public int getPlayerId() {
         return playerId;
     }
+
+    @Override
+    public void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+    }
+
+    @Override
+    public void undo(int field, long oldValue, Object key, Object oldReference) {
+        if (field == DISCOVERED_BOARD_RATIO) discoveredBoardRatio = UndoLog.toFloat(oldValue);
+        else if (field == ESTIMATED_DISCOVERED_CITIES) estimatedDiscoveredCities = (int) oldValue;
+    }
 }
@@ -1,21 +1,21 @@
 package at.ac.tuwien.ifs.sge.agent.discoveredBoard;
 
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.unitHeuristics.UnitHeuristics;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.VisionUpdate;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.MovementStartOrder;
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
-import at.ac.tuwien.ifs.sge.game.empire.exception.EmpireMapException;
-import at.ac.tuwien.ifs.sge.game.empire.map.EmpireMap;
-import at.ac.tuwien.ifs.sge.game.empire.map.Size;
-import at.ac.tuwien.ifs.sge.game.empire.model.map.EmpireTerrain;
 import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
 
-public class RadetzkyDiscoveredBoard implements DiscoveredBoard {
+public class RadetzkyDiscoveredBoard implements DiscoveredBoard, UndoLog.Undoable {
+    private static final int DISCOVERED_BOARD_RATIO = 0, DISCOVERED_TILES = 1;
     private final int radetzkyPlayerId;
     private final int tilesCount;
     private final float ratioPerTile;
     private float discoveredBoardRatio;
+    private DiscoveredTiles discoveredTiles; // shared with the copies, replaced instead of modified
+    private UndoLog undoLog;
 
     private RadetzkyDiscoveredBoard(int radetzkyPlayerId, int tilesCount) {
         this.radetzkyPlayerId = radetzkyPlayerId;
@@ -23,16 +23,17 @@ public class RadetzkyDiscoveredBoard implements DiscoveredBoard {
         this.ratioPerTile = 1f / tilesCount;
     }
 
-    private RadetzkyDiscoveredBoard(int radetzkyPlayerId, int tilesCount, float ratioPerTile, float discoveredBoardRatio) {
+    private RadetzkyDiscoveredBoard(int radetzkyPlayerId, int tilesCount, float ratioPerTile, float discoveredBoardRatio, DiscoveredTiles discoveredTiles) {
         this.radetzkyPlayerId = radetzkyPlayerId;
         this.tilesCount = tilesCount;
         this.ratioPerTile = ratioPerTile;
         this.discoveredBoardRatio = discoveredBoardRatio;
+        this.discoveredTiles = discoveredTiles;
     }
 
     @Override
     public RadetzkyDiscoveredBoard copy() {
-        return new RadetzkyDiscoveredBoard(radetzkyPlayerId, tilesCount, ratioPerTile, discoveredBoardRatio);
+        return new RadetzkyDiscoveredBoard(radetzkyPlayerId, tilesCount, ratioPerTile, discoveredBoardRatio, discoveredTiles);
     }
 
     @Override
@@ -44,39 +45,51 @@ public class RadetzkyDiscoveredBoard implements DiscoveredBoard {
         var map = gameState.getBoard();
         var size = map.getMapSize();
         var discoveredBoard = new RadetzkyDiscoveredBoard(radetzkyPlayerId, size.getHeight() * size.getWidth());
-        discoveredBoard.discoveredBoardRatio = getDiscoveredTilesRatio(map, size);
+        discoveredBoard.discoveredTiles = DiscoveredTiles.scan(map);
+        discoveredBoard.discoveredBoardRatio = discoveredBoard.ratioPerTile * discoveredBoard.discoveredTiles.getDiscoveredCount();
         return discoveredBoard;
     }
 
-    private static float getDiscoveredTilesRatio(EmpireMap board, Size size) {
-        int discovered = 0;
-        int undiscovered = 0;
-        try {
-            for (int x = 0; x < size.getWidth(); x += 3) {
-                for (int y = 0; y < size.getHeight(); y += 3) {
-                    if (board.getTile(x, y) == null) undiscovered++;
-                    else discovered++;
-                }
-            }
-        } catch (EmpireMapException e) {
-            e.printStackTrace();
-        }
-        return ((float) discovered) / (undiscovered + discovered);
-    }
-
     @Override
     public void apply(Empire gameState, EmpireEvent nextAction) {
         if (nextAction instanceof VisionUpdate visionUpdate) {
             if (visionUpdate.getPlayerId() != radetzkyPlayerId) return;
-            var map = gameState.getBoard();
-            var size = map.getMapSize();
-            discoveredBoardRatio = getDiscoveredTilesRatio(map, size);
+            if (undoLog != null) {
+                undoLog.record(this, DISCOVERED_TILES, 0, null, discoveredTiles);
+                undoLog.record(this, DISCOVERED_BOARD_RATIO, discoveredBoardRatio);
+            }
+            // only the surroundings of our units can have been discovered
+            discoveredTiles = discoveredTiles.update(gameState.getBoard(), gameState.getUnitsByPlayer(radetzkyPlayerId));
+            discoveredBoardRatio = ratioPerTile * discoveredTiles.getDiscoveredCount();
         } else if (nextAction instanceof MovementStartOrder movementStartOrder) {
             var unit = gameState.getUnit(movementStartOrder.getUnitId());
-            if (unit.getPlayerId() != radetzkyPlayerId) return;
-            var newlyDiscoveredTiles = getNumberOfNewUndiscoveredTiles(gameState, movementStartOrder, unit);
-            discoveredBoardRatio += ratioPerTile * newlyDiscoveredTiles;
+            if (unit == null || unit.getPlayerId() != radetzkyPlayerId) return;
+            // simulated moves have no vision updates, the tiles they will see are discovered right away so that further
+            // moves into the same area get no credit for them. The next real vision update corrects this, see rescan
+            var destination = movementStartOrder.getDestination();
+            var discovered = discoveredTiles.discover(destination.getX(), destination.getY(), unit.getFov());
+            if (discovered == discoveredTiles) return;
+            if (undoLog != null) {
+                undoLog.record(this, DISCOVERED_TILES, 0, null, discoveredTiles);
+                undoLog.record(this, DISCOVERED_BOARD_RATIO, discoveredBoardRatio);
+            }
+            discoveredTiles = discovered;
+            discoveredBoardRatio = ratioPerTile * discoveredTiles.getDiscoveredCount();
+        }
+    }
+
+    // Takes the discovered tiles from the map of the game. Vision updates only look around the units where they are when
+    // the update is applied, the map also knows the tiles seen from where a unit stood when the update happened. Tiles
+    // that were only discovered by moves are dropped until they are seen
+    public void rescan(Empire gameState) {
+        var scanned = DiscoveredTiles.scan(gameState.getBoard());
+        if (scanned.isSameAs(discoveredTiles)) return;
+        if (undoLog != null) {
+            undoLog.record(this, DISCOVERED_TILES, 0, null, discoveredTiles);
+            undoLog.record(this, DISCOVERED_BOARD_RATIO, discoveredBoardRatio);
         }
+        discoveredTiles = scanned;
+        discoveredBoardRatio = ratioPerTile * discoveredTiles.getDiscoveredCount();
     }
 
     @Override
@@ -89,23 +102,10 @@ public class RadetzkyDiscoveredBoard implements DiscoveredBoard {
             System.err.println("Unit with id " + movementStartOrder.getUnitId() + " is null");
             return 0;
         }
-        var fov = unit.getFov();
-        var map = gameState.getBoard();
         var destination = movementStartOrder.getDestination();
-        var newlyDiscoveredTiles = 0;
-        try {
-            for (int x = -fov; x <= fov; x++) {
-                for (int y = -fov; y <= fov; y++) {
-                    if (x == 0 && y == 0) continue;
-                    var actualX = destination.getX() + x;
-                    var actualY = destination.getY() + y;
-                    if (!map.isInside(actualX, actualY)) continue;
-                    EmpireTerrain tile = map.getTile(actualX, actualY);
-                    if (tile == null) newlyDiscoveredTiles++;
-                }
-            }
-        } catch (EmpireMapException e) {
-            e.printStackTrace();
+        var newlyDiscoveredTiles = discoveredTiles.countUndiscovered(destination.getX(), destination.getY(), unit.getFov());
+        if (!discoveredTiles.isDiscovered(destination.getX(), destination.getY()) && gameState.getBoard().isInside(destination.getX(), destination.getY())) {
+            newlyDiscoveredTiles--; // the destination itself is not counted
         }
         return newlyDiscoveredTiles;
     }
@@ -114,4 +114,15 @@ public class RadetzkyDiscoveredBoard implements DiscoveredBoard {
     public int getPlayerId() {
         return radetzkyPlayerId;
     }
+
+    @Override
+    public void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+    }
+
+    @Override
+    public void undo(int field, long oldValue, Object key, Object oldReference) {
+        if (field == DISCOVERED_BOARD_RATIO) discoveredBoardRatio = UndoLog.toFloat(oldValue);
+        else if (field == DISCOVERED_TILES) discoveredTiles = (DiscoveredTiles) oldReference;
+    }
 }
@@ -4,6 +4,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.UUID;
 
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.UnitStats;
 import at.ac.tuwien.ifs.sge.agent.discoveredBoard.EnemyDiscoveredBoard;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
@@ -12,15 +13,19 @@ import at.ac.tuwien.ifs.sge.game.empire.communication.event.action.UnitDamagedAc
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
 import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
 
-public class EnemyUnitHeuristics implements UnitHeuristics {
+public class EnemyUnitHeuristics implements UnitHeuristics, UndoLog.Undoable {
     // todo remove. For now, we assume that the enemy AI is not perfect either and reduce its max efficiency
     public static final float ArtificialInefficiencyFactor = .7f;
+    private static final int TIME_OF_LAST_PRODUCTION = 0, KNOWN_UNIT_ADDED = 1, KNOWN_UNIT_REMOVED = 2, ESTIMATED_UNITS = 3; // + type
     private final int playerId;
     private final EnemyDiscoveredBoard discoveredBoard;
 
-    private final HashMap<UUID, EmpireUnit> knownUnits = new HashMap<>();
+    // shared with the copies until one of them changes it, see getWritableKnownUnits
+    private HashMap<UUID, EmpireUnit> knownUnits = new HashMap<>();
+    private boolean knownUnitsShared = false;
     private final int[] estimatedNumberOfUnitsPerType = new int[4]; // [0] unused
     private long timeOfLastProduction = 0;
+    private UndoLog undoLog;
 
     public EnemyUnitHeuristics(int playerId, EnemyDiscoveredBoard discoveredBoard) {
         this.playerId = playerId;
@@ -31,12 +36,14 @@ public class EnemyUnitHeuristics implements UnitHeuristics {
         this.playerId = playerId;
         this.discoveredBoard = discoveredBoard;
         this.timeOfLastProduction = timeOfLastProduction;
-        this.knownUnits.putAll(knownUnits);
+        this.knownUnits = knownUnits;
+        this.knownUnitsShared = true;
         System.arraycopy(estimatedNumberOfUnitsPerType, 1, this.estimatedNumberOfUnitsPerType, 1, estimatedNumberOfUnitsPerType.length - 1);
     }
 
     @Override
     public UnitHeuristics copy() {
+        knownUnitsShared = true;
         return new EnemyUnitHeuristics(playerId, discoveredBoard.copy(), timeOfLastProduction, knownUnits, estimatedNumberOfUnitsPerType);
     }
 
@@ -45,7 +52,10 @@ public class EnemyUnitHeuristics implements UnitHeuristics {
         if (action instanceof UnitAppearedAction unitAppearedAction) {
             var unit = unitAppearedAction.getUnit();
             if (unit.getPlayerId() != playerId) return;
-            knownUnits.putIfAbsent(unit.getId(), unit);
+            if (!knownUnits.containsKey(unit.getId())) {
+                getWritableKnownUnits().put(unit.getId(), unit);
+                if (undoLog != null) undoLog.record(this, KNOWN_UNIT_ADDED, 0, unit.getId(), null);
+            }
             var type = unit.getUnitTypeId();
             removeEstimatedUnit(type);
         } else if (action instanceof UnitDamagedAction unitDamagedAction) {
@@ -58,32 +68,49 @@ public class EnemyUnitHeuristics implements UnitHeuristics {
         if (unit == null) return;
         if (unit.getPlayerId() != playerId) return;
         if (unit.getHp() > 0) return;
-        if (knownUnits.remove(unit.getId()) == null) return;
+        if (!knownUnits.containsKey(unit.getId())) return;
+        var removed = getWritableKnownUnits().remove(unit.getId());
+        if (undoLog != null) undoLog.record(this, KNOWN_UNIT_REMOVED, 0, unit.getId(), removed);
         removeEstimatedUnit(unit.getUnitTypeId());
     }
 
+    private HashMap<UUID, EmpireUnit> getWritableKnownUnits() {
+        if (knownUnitsShared) {
+            knownUnits = new HashMap<>(knownUnits);
+            knownUnitsShared = false;
+        }
+        return knownUnits;
+    }
+
     private void removeEstimatedUnit(int type) {
-        estimatedNumberOfUnitsPerType[type]--;
-        if (estimatedNumberOfUnitsPerType[type] < 0) {
-            estimatedNumberOfUnitsPerType[type] = 0;
+        if (estimatedNumberOfUnitsPerType[type] > 0) {
+            setEstimatedNumberOfUnits(type, estimatedNumberOfUnitsPerType[type] - 1);
+        } else {
+            setEstimatedNumberOfUnits(type, 0);
 
             for (int i = 1; i < estimatedNumberOfUnitsPerType.length; i++) {
                 if (i == type) continue;
                 if (estimatedNumberOfUnitsPerType[i] <= 0) continue;
-                estimatedNumberOfUnitsPerType[i]--;
+                setEstimatedNumberOfUnits(i, estimatedNumberOfUnitsPerType[i] - 1);
                 break;
             }
         }
     }
 
+    private void setEstimatedNumberOfUnits(int type, int number) {
+        if (undoLog != null) undoLog.record(this, ESTIMATED_UNITS + type, estimatedNumberOfUnitsPerType[type]);
+        estimatedNumberOfUnitsPerType[type] = number;
+    }
+
     @Override
     public void advance(Empire gameState, long millis) {
         var bestType = getCurrentBestUnitType();
+        if (undoLog != null) undoLog.record(this, TIME_OF_LAST_PRODUCTION, timeOfLastProduction);
         timeOfLastProduction += millis;
         var bestCost = UnitStats.costOfType[bestType] * 1000;
         if (bestCost > timeOfLastProduction) {
             timeOfLastProduction -= bestCost;
-            estimatedNumberOfUnitsPerType[bestType]++;
+            setEstimatedNumberOfUnits(bestType, estimatedNumberOfUnitsPerType[bestType] + 1);
         }
     }
 
@@ -119,6 +146,11 @@ public class EnemyUnitHeuristics implements UnitHeuristics {
         return heuristic * ArtificialInefficiencyFactor;
     }
 
+    @Override
+    public int getEstimatedNumberOfUnits(int unitType) {
+        return estimatedNumberOfUnitsPerType[unitType];
+    }
+
     @Override
     public float getTilesDiscoveryCapacity() {
         var capacity = 0f;
@@ -131,4 +163,17 @@ public class EnemyUnitHeuristics implements UnitHeuristics {
         }
         return capacity * ArtificialInefficiencyFactor;
     }
+
+    @Override
+    public void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+    }
+
+    @Override
+    public void undo(int field, long oldValue, Object key, Object oldReference) {
+        if (field == TIME_OF_LAST_PRODUCTION) timeOfLastProduction = oldValue;
+        else if (field == KNOWN_UNIT_ADDED) getWritableKnownUnits().remove((UUID) key);
+        else if (field == KNOWN_UNIT_REMOVED) getWritableKnownUnits().put((UUID) key, (EmpireUnit) oldReference);
+        else estimatedNumberOfUnitsPerType[field - ESTIMATED_UNITS] = (int) oldValue;
+    }
 }
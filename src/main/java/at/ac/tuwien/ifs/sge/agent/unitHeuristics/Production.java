@@ -1,9 +1,11 @@
 package at.ac.tuwien.ifs.sge.agent.unitHeuristics;
 
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.UnitStats;
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
 
-public class Production {
+public class Production implements UndoLog.Undoable {
+    private static final int IS_FINISHED = 0;
     public final int type;
     public final long finishTime;
     public boolean isFinished;
@@ -33,6 +35,19 @@ public class Production {
         }
     }
 
+    public boolean willFinish(long now) {
+        return !isFinished && now >= finishTime;
+    }
+
+    void recordFinish(UndoLog undoLog) {
+        undoLog.record(this, IS_FINISHED, 0);
+    }
+
+    @Override
+    public void undo(int field, long oldValue, Object key, Object oldReference) {
+        if (field == IS_FINISHED) isFinished = oldValue != 0;
+    }
+
     public float getFinishedRatio(long now) {
         var remaining = finishTime - now;
         if (remaining <= 0) return 1f;
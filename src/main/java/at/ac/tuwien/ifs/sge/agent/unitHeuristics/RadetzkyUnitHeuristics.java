@@ -4,6 +4,8 @@ import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 
+import at.ac.tuwien.ifs.sge.agent.StateHash;
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.discoveredBoard.RadetzkyDiscoveredBoard;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.action.ProductionAction;
@@ -13,13 +15,15 @@ import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
 import at.ac.tuwien.ifs.sge.game.empire.model.map.EmpireCity;
 import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
 
-public class RadetzkyUnitHeuristics implements UnitHeuristics {
+public class RadetzkyUnitHeuristics implements UnitHeuristics, UndoLog.Undoable {
+    private static final int TILES_DISCOVER_CAPACITY = 0, DAMAGE_CAPACITY = 1, TOTAL_HP = 2, PRODUCTION = 3;
     private final int radetzkyPlayerId;
     private final RadetzkyDiscoveredBoard discoveredBoard;
     public float tilesDiscoverCapacity;
     public float damageCapacity;
     public float totalHp;
     private final Map<EmpireCity, Production> inProduction; // todo remove?
+    private UndoLog undoLog;
 
     public RadetzkyUnitHeuristics(int radetzkyPlayerId, List<EmpireUnit> units, Map<EmpireCity, Production> inProduction, RadetzkyDiscoveredBoard discoveredBoard) {
         this.radetzkyPlayerId = radetzkyPlayerId;
@@ -46,7 +50,11 @@ public class RadetzkyUnitHeuristics implements UnitHeuristics {
         this.tilesDiscoverCapacity = tilesDiscoverCapacity;
         this.damageCapacity = damageCapacity;
         this.totalHp = totalHp;
-        this.inProduction = new HashMap<>(inProduction);
+        // productions are advanced in place, copies must not share them with cached states
+        this.inProduction = new HashMap<>(inProduction.size() * 2);
+        for (Map.Entry<EmpireCity, Production> entry : inProduction.entrySet()) {
+            this.inProduction.put(entry.getKey(), entry.getValue().copy());
+        }
         this.discoveredBoard = discoveredBoard;
     }
 
@@ -60,28 +68,49 @@ public class RadetzkyUnitHeuristics implements UnitHeuristics {
         if (action instanceof ProductionStartOrder productionStartOrder) {
             var city = gameState.getCitiesByPosition().get(productionStartOrder.getCityPosition());
             var type = productionStartOrder.getUnitTypeId();
-            inProduction.put(city, new Production(gameState, type));
+            var replaced = inProduction.put(city, new Production(gameState, type));
+            if (undoLog != null) undoLog.record(this, PRODUCTION, 0, city, replaced);
         } else if (action instanceof ProductionStopOrder productionStopOrder) {
             var city = gameState.getCitiesByPosition().get(productionStopOrder.getCityPosition());
-            inProduction.remove(city);
+            var removed = inProduction.remove(city);
+            if (undoLog != null && removed != null) undoLog.record(this, PRODUCTION, 0, city, removed);
         } else if (action instanceof ProductionAction productionAction) {
             var unit = gameState.getUnit(productionAction.getUnitId());
-            if (unit.getPlayerId() != radetzkyPlayerId) return;
+            if (unit == null || unit.getPlayerId() != radetzkyPlayerId) return;
+            recordCapacities();
             tilesDiscoverCapacity += UnitHeuristics.getTilesDiscoveryCapacity(unit);
             damageCapacity += UnitHeuristics.getDamageCapacity(unit);
         }
     }
 
+    // Drops the productions of cities that were left and finishes the ones that are done
     @Override
     public void advance(Empire gameState, long millis) {
         if (inProduction.isEmpty()) return;
-        inProduction.keySet().removeIf(city -> city.getOccupants().isEmpty());
         var now = gameState.getGameClock().getGameTimeMs();
-        inProduction.entrySet().removeIf(entry -> {
+        var iterator = inProduction.entrySet().iterator();
+        while (iterator.hasNext()) {
+            var entry = iterator.next();
+            var city = entry.getKey();
             var production = entry.getValue();
-            production.advance(this, now);
-            return production.isFinished;
-        });
+            if (!city.getOccupants().isEmpty()) {
+                if (undoLog != null && production.willFinish(now)) {
+                    recordCapacities();
+                    production.recordFinish(undoLog);
+                }
+                production.advance(this, now);
+                if (!production.isFinished) continue;
+            }
+            if (undoLog != null) undoLog.record(this, PRODUCTION, 0, city, production);
+            iterator.remove();
+        }
+    }
+
+    private void recordCapacities() {
+        if (undoLog == null) return;
+        undoLog.record(this, TILES_DISCOVER_CAPACITY, tilesDiscoverCapacity);
+        undoLog.record(this, DAMAGE_CAPACITY, damageCapacity);
+        undoLog.record(this, TOTAL_HP, totalHp);
     }
 
     @Override
@@ -104,4 +133,32 @@ public class RadetzkyUnitHeuristics implements UnitHeuristics {
     public float getTilesDiscoveryCapacity() {
         return tilesDiscoverCapacity;
     }
+
+    @Override
+    public void setUndoLog(UndoLog undoLog) {
+        this.undoLog = undoLog;
+    }
+
+    @Override
+    public void undo(int field, long oldValue, Object key, Object oldReference) {
+        switch (field) {
+            case TILES_DISCOVER_CAPACITY -> tilesDiscoverCapacity = UndoLog.toFloat(oldValue);
+            case DAMAGE_CAPACITY -> damageCapacity = UndoLog.toFloat(oldValue);
+            case TOTAL_HP -> totalHp = UndoLog.toFloat(oldValue);
+            case PRODUCTION -> {
+                // the production that was in the city before, null if there was none
+                if (oldReference == null) inProduction.remove((EmpireCity) key);
+                else inProduction.put((EmpireCity) key, (Production) oldReference);
+            }
+        }
+    }
+
+    @Override
+    public long getProductionHash() {
+        var hash = 0L;
+        for (Map.Entry<EmpireCity, Production> entry : inProduction.entrySet()) {
+            hash += StateHash.mix(StateHash.PRODUCTION_SALT ^ StateHash.positionKey(entry.getKey().getPosition()) ^ ((long) entry.getValue().type << 40));
+        }
+        return hash;
+    }
 }
@@ -4,6 +4,7 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.UUID;
 
 import at.ac.tuwien.ifs.sge.agent.discoveredBoard.RadetzkyDiscoveredBoard;
 import at.ac.tuwien.ifs.sge.core.engine.logging.Logger;
@@ -12,13 +13,15 @@ import at.ac.tuwien.ifs.sge.game.empire.communication.event.action.InitialSpawnA
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.start.ProductionStartOrder;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.order.stop.ProductionStopOrder;
 import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+import at.ac.tuwien.ifs.sge.game.empire.map.Position;
 import at.ac.tuwien.ifs.sge.game.empire.model.map.EmpireCity;
 import at.ac.tuwien.ifs.sge.game.empire.model.units.EmpireUnit;
 
+// Units and cities are only referenced by id and position, they are looked up in the game the heuristics are made for
 public class UnitDirectory {
 
-    private final List<EmpireUnit> units = new ArrayList<>();
-    private final Map<EmpireCity, Production> productions = new HashMap<>();
+    private final List<UUID> unitIds = new ArrayList<>();
+    private final Map<Position, Production> productions = new HashMap<>();
     private final int radetzkyPlayerId;
 
     public UnitDirectory(int radetzkyPlayerId) {this.radetzkyPlayerId = radetzkyPlayerId;}
@@ -29,27 +32,33 @@ public class UnitDirectory {
                 logger.info("InitialSpawnAction for wrong player");
                 return;
             }
-            units.add(realGame.getUnit(initialSpawnAction.getUnitId()));
+            unitIds.add(initialSpawnAction.getUnitId());
         } else if (action instanceof ProductionStartOrder productionStartOrder) {
-            var city = realGame.getCitiesByPosition().get(productionStartOrder.getCityPosition());
-            logger.info("ProductionStartOrder for city " + city + " and unit type " + productionStartOrder.getUnitTypeId());
-            productions.put(city, new Production(realGame, productionStartOrder.getUnitTypeId()));
+            var position = productionStartOrder.getCityPosition();
+            logger.info("ProductionStartOrder for city " + realGame.getCitiesByPosition().get(position) + " and unit type " + productionStartOrder.getUnitTypeId());
+            productions.put(position, new Production(realGame, productionStartOrder.getUnitTypeId()));
         } else if (action instanceof ProductionStopOrder productionStopOrder) {
-            var city = realGame.getCitiesByPosition().get(productionStopOrder.getCityPosition());
-            logger.info("ProductionStopOrder for city " + city);
-            productions.remove(city);
+            var position = productionStopOrder.getCityPosition();
+            logger.info("ProductionStopOrder for city " + realGame.getCitiesByPosition().get(position));
+            productions.remove(position);
         }
     }
 
     public void print(Logger log) {
-        log.info("Player has " + units.size() + " units, and " + productions.size() + " are being produced");
+        log.info("Player has " + unitIds.size() + " units, and " + productions.size() + " are being produced");
     }
 
-    public RadetzkyUnitHeuristics getHeuristics(RadetzkyDiscoveredBoard discoveredBoard) {
+    public RadetzkyUnitHeuristics getHeuristics(Empire game, RadetzkyDiscoveredBoard discoveredBoard) {
         HashMap<EmpireCity, Production> inProduction = new HashMap<>(productions.size());
-        for (Map.Entry<EmpireCity, Production> entry : productions.entrySet()) {
-            inProduction.put(entry.getKey(), entry.getValue().copy());
+        for (Map.Entry<Position, Production> entry : productions.entrySet()) {
+            var city = game.getCitiesByPosition().get(entry.getKey());
+            if (city != null) inProduction.put(city, entry.getValue().copy());
         }
-        return new RadetzkyUnitHeuristics(radetzkyPlayerId, new ArrayList<>(units), inProduction, discoveredBoard);
+        var units = new ArrayList<EmpireUnit>(unitIds.size());
+        for (int i = 0; i < unitIds.size(); i++) {
+            var unit = game.getUnit(unitIds.get(i));
+            if (unit != null) units.add(unit); // killed units are gone from the game
+        }
+        return new RadetzkyUnitHeuristics(radetzkyPlayerId, units, inProduction, discoveredBoard);
     }
 }
@@ -1,5 +1,6 @@
 package at.ac.tuwien.ifs.sge.agent.unitHeuristics;
 
+import at.ac.tuwien.ifs.sge.agent.UndoLog;
 import at.ac.tuwien.ifs.sge.agent.UnitStats;
 import at.ac.tuwien.ifs.sge.agent.discoveredBoard.DiscoveredBoard;
 import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
@@ -19,6 +20,18 @@ public interface UnitHeuristics {
 
     float getTilesDiscoveryCapacity();
 
+    // Changes are recorded to the log until it is set to null. Copies do not record
+    void setUndoLog(UndoLog undoLog);
+
+    default long getProductionHash() {
+        return 0;
+    }
+
+    // Units that are assumed to exist without having been seen
+    default int getEstimatedNumberOfUnits(int unitType) {
+        return 0;
+    }
+
     static float getTilesDiscoveryCapacity(int unitType) {
         return UnitStats.speedOfType[unitType] * getTilesDiscoveryCapacityFromFov(UnitStats.fovOfType[unitType]);
     }
@@ -42,7 +55,10 @@ public interface UnitHeuristics {
     }
 
     static float calculateHeuristicFromUnitType(int unitType, DiscoveredBoard discoveredBoard) {
-        var discoveredTilesRatio = discoveredBoard.getDiscoveredBoardRatio();
+        return calculateHeuristicFromUnitType(unitType, discoveredBoard.getDiscoveredBoardRatio());
+    }
+
+    static float calculateHeuristicFromUnitType(int unitType, float discoveredTilesRatio) {
         float inverseRatio = 1f - discoveredTilesRatio;
         float squaredRatio = discoveredTilesRatio * discoveredTilesRatio;
         float costMalus = UnitStats.costOfType[unitType] / UnitStats.maxUnitCost;
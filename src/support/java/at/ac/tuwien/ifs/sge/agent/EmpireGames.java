@@ -0,0 +1,22 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import at.ac.tuwien.ifs.sge.game.empire.core.Empire;
+import at.ac.tuwien.ifs.sge.game.empire.map.Size;
+import at.ac.tuwien.ifs.sge.game.empire.model.configuration.EmpireConfiguration;
+
+// The only place that depends on how the engine creates games, shared by the harness and the benchmarks. Not part
+// of the agent jar
+public class EmpireGames {
+    // The map generator is seeded so the map is fixed
+    public static Empire create(int mapSize, long seed, int numberOfPlayers) {
+        var configuration = EmpireConfiguration.getDefaultConfiguration();
+        configuration.getGeneratorConfig().setMapSize(new Size(mapSize, mapSize));
+        configuration.getGeneratorConfig().setSeed(seed);
+        return new Empire(configuration, numberOfPlayers);
+    }
+
+    // The game as the engine sends it to the player, with the fog of war
+    public static Empire getPlayerView(Empire game, int playerId) {
+        return (Empire) game.getGame(playerId);
+    }
+}
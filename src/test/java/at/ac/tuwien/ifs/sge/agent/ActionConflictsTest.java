@@ -0,0 +1,55 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+
+import at.ac.tuwien.ifs.sge.game.empire.communication.event.EmpireEvent;
+
+// Candidates are names of orders, names that share an order conflict because they are given to the same actor.
+// Unknown orders are their own actor, so plain events are enough
+public class ActionConflictsTest {
+    private final EmpireEvent first = new EmpireEvent() {};
+    private final EmpireEvent second = new EmpireEvent() {};
+    private final EmpireEvent third = new EmpireEvent() {};
+    private final Map<String, EmpireEvent> orders = Map.of("a", first, "a'", first, "b", second, "c", third);
+
+    @Test
+    public void skipsCandidatesThatConflictWithATakenOne() {
+        var selected = ActionConflicts.selectNonConflicting(List.of("a", "a'", "b"), orders::get, candidate -> true, 8);
+        assertEquals(List.of("a", "b"), selected);
+    }
+
+    @Test
+    public void skipsCandidatesThatDoNothing() {
+        var selected = ActionConflicts.selectNonConflicting(List.of("nothing", "b"), orders::get, candidate -> true, 8);
+        assertEquals(List.of("b"), selected);
+    }
+
+    @Test
+    public void aRejectedCandidateLeavesItsActorFree() {
+        // the validity check rejects a, so the later order for the same actor can still be taken
+        var selected = ActionConflicts.selectNonConflicting(List.of("a", "b", "a'"), orders::get, candidate -> !candidate.equals("a"), 8);
+        assertEquals(List.of("b", "a'"), selected);
+    }
+
+    @Test
+    public void checksOnlyCandidatesWithoutConflictInOrder() {
+        var checked = new ArrayList<String>();
+        ActionConflicts.selectNonConflicting(List.of("a", "a'", "b", "c"), orders::get, candidate -> {
+            checked.add(candidate);
+            return !candidate.equals("b");
+        }, 8);
+        assertEquals(List.of("a", "b", "c"), checked);
+    }
+
+    @Test
+    public void stopsAtTheMaximumSize() {
+        var selected = ActionConflicts.selectNonConflicting(List.of("a", "b", "c"), orders::get, candidate -> true, 2);
+        assertEquals(List.of("a", "b"), selected);
+    }
+}
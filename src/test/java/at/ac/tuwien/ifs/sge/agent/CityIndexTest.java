@@ -0,0 +1,65 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.junit.jupiter.api.Test;
+
+import at.ac.tuwien.ifs.sge.game.empire.map.Position;
+
+public class CityIndexTest {
+    @Test
+    public void findsTheClosestAcceptedCityLikeBruteForce() {
+        var random = new Random(7);
+        for (int round = 0; round < 20; round++) {
+            var cities = new ArrayList<Position>();
+            var count = 1 + random.nextInt(60);
+            for (int i = 0; i < count; i++) {
+                cities.add(new Position(random.nextInt(120), random.nextInt(80)));
+            }
+            var occupied = new HashSet<Position>();
+            for (Position city : cities) {
+                if (random.nextInt(3) == 0) occupied.add(city);
+            }
+            var index = CityIndex.of(cities);
+            for (int query = 0; query < 50; query++) {
+                // also from outside the area of the cities
+                var from = new Position(random.nextInt(160) - 20, random.nextInt(120) - 20);
+                var expected = findClosest(cities, occupied, from);
+                var closest = index.getClosestCity(from, position -> !occupied.contains(position));
+                if (expected == null) {
+                    assertNull(closest);
+                } else {
+                    assertEquals(PositionExtensions.GetDistance(from, expected), PositionExtensions.GetDistance(from, closest), 1e-4f);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void returnsNullWithoutCities() {
+        var index = CityIndex.of(List.of());
+        assertNull(index.getClosestCity(new Position(3, 4), position -> true));
+    }
+
+    @Test
+    public void returnsNullIfNoCityIsAccepted() {
+        var index = CityIndex.of(List.of(new Position(1, 1), new Position(50, 50)));
+        assertNull(index.getClosestCity(new Position(3, 4), position -> false));
+    }
+
+    private static Position findClosest(List<Position> cities, Set<Position> occupied, Position from) {
+        Position closest = null;
+        for (Position city : cities) {
+            if (occupied.contains(city)) continue;
+            if (closest == null || PositionExtensions.GetDistance(from, city) < PositionExtensions.GetDistance(from, closest)) closest = city;
+        }
+        return closest;
+    }
+}
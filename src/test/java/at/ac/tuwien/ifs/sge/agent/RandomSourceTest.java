@@ -0,0 +1,73 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Arrays;
+
+import org.junit.jupiter.api.Test;
+
+public class RandomSourceTest {
+    private static final int DRAWS = 16;
+
+    @Test
+    public void sameSeedAndWorkerGiveTheSameStreams() {
+        var a = new RandomSource(42, 3);
+        var b = new RandomSource(42, 3);
+        assertArrayEquals(draw(a), draw(b));
+        for (int iteration = 0; iteration < 10; iteration++) {
+            a.startStream(5, iteration);
+            b.startStream(5, iteration);
+            assertArrayEquals(draw(a), draw(b));
+        }
+    }
+
+    @Test
+    public void aStreamDoesNotDependOnEarlierDraws() {
+        var random = new RandomSource(42, 0);
+        random.startStream(2, 7);
+        var expected = draw(random);
+        random.startStream(1, 0);
+        draw(random);
+        random.nextInt(100);
+        random.startStream(2, 7);
+        assertArrayEquals(expected, draw(random));
+    }
+
+    @Test
+    public void streamsDifferByWorkerSeedDecisionAndIteration() {
+        var stream = stream(42, 0, 1, 1);
+        assertFalse(Arrays.equals(stream, stream(42, 1, 1, 1)), "worker");
+        assertFalse(Arrays.equals(stream, stream(43, 0, 1, 1)), "seed");
+        assertFalse(Arrays.equals(stream, stream(42, 0, 2, 1)), "decision");
+        assertFalse(Arrays.equals(stream, stream(42, 0, 1, 2)), "iteration");
+    }
+
+    @Test
+    public void drawsStayInTheirRanges() {
+        var random = new RandomSource(1, 0);
+        for (int i = 0; i < 10000; i++) {
+            var nextFloat = random.nextFloat();
+            var nextDouble = random.nextDouble();
+            var nextInt = random.nextInt(7);
+            assertTrue(nextFloat >= 0 && nextFloat < 1);
+            assertTrue(nextDouble >= 0 && nextDouble < 1);
+            assertTrue(nextInt >= 0 && nextInt < 7);
+        }
+    }
+
+    private static long[] stream(long seed, int worker, long decision, long iteration) {
+        var random = new RandomSource(seed, worker);
+        random.startStream(decision, iteration);
+        return draw(random);
+    }
+
+    private static long[] draw(RandomSource random) {
+        var values = new long[DRAWS];
+        for (int i = 0; i < DRAWS; i++) {
+            values[i] = random.nextLong();
+        }
+        return values;
+    }
+}
@@ -0,0 +1,45 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import org.junit.jupiter.api.Test;
+
+public class SpscQueueTest {
+    @Test
+    public void pollsInOfferOrder() {
+        var queue = new SpscQueue<Integer>();
+        assertNull(queue.poll());
+        queue.offer(1);
+        queue.offer(2);
+        assertEquals(1, (int) queue.poll());
+        queue.offer(3);
+        assertEquals(2, (int) queue.poll());
+        assertEquals(3, (int) queue.poll());
+        assertNull(queue.poll());
+    }
+
+    @Test
+    public void keepsTheOrderBetweenTwoThreads() throws InterruptedException {
+        var queue = new SpscQueue<Integer>();
+        var count = 1_000_000;
+        var producer = new Thread(() -> {
+            for (int i = 0; i < count; i++) {
+                queue.offer(i);
+            }
+        });
+        producer.start();
+        var expected = 0;
+        while (expected < count) {
+            var value = queue.poll();
+            if (value == null) {
+                Thread.onSpinWait();
+                continue;
+            }
+            assertEquals(expected, (int) value);
+            expected++;
+        }
+        producer.join();
+        assertNull(queue.poll());
+    }
+}
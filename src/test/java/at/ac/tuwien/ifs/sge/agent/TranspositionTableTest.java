@@ -0,0 +1,65 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+public class TranspositionTableTest {
+    // in a table of 4 slots these hashes all map to the slots 0 and 1
+    private static final long FIRST = 4;
+    private static final long SECOND = 5;
+    private static final long THIRD = 8;
+
+    @Test
+    public void keepsTwoCollidingHashes() {
+        var table = new TranspositionTable(4);
+        table.record(FIRST, 3, 1);
+        table.record(SECOND, 1, 1);
+        assertStatistics(table, FIRST, 3, 1);
+        assertStatistics(table, SECOND, 1, 1);
+    }
+
+    @Test
+    public void addsToAStoredHash() {
+        var table = new TranspositionTable(4);
+        table.record(FIRST, 3, 1);
+        table.record(SECOND, 1, 0);
+        table.record(FIRST, 2, 1);
+        assertStatistics(table, FIRST, 5, 2);
+        assertStatistics(table, SECOND, 1, 0);
+    }
+
+    @Test
+    public void aThirdCollidingHashReplacesTheLessVisitedOne() {
+        var table = new TranspositionTable(4);
+        table.record(FIRST, 3, 1);
+        table.record(SECOND, 1, 1);
+        table.record(THIRD, 2, 2);
+        assertStatistics(table, FIRST, 3, 1);
+        assertEquals(0, table.get(SECOND));
+        assertStatistics(table, THIRD, 2, 2);
+    }
+
+    @Test
+    public void countsHitsOfLookups() {
+        var table = new TranspositionTable(4);
+        table.record(FIRST, 1, 0);
+        table.lookup(FIRST);
+        table.lookup(THIRD);
+        assertEquals(.5f, table.getHitRate());
+    }
+
+    @Test
+    public void agingHalvesTheStatistics() {
+        var table = new TranspositionTable(4);
+        table.record(FIRST, 5, 3);
+        table.age();
+        assertStatistics(table, FIRST, 2, 1);
+    }
+
+    private static void assertStatistics(TranspositionTable table, long hash, int visits, int wins) {
+        var statistics = table.get(hash);
+        assertEquals(visits, TranspositionTable.getVisits(statistics), "visits");
+        assertEquals(wins, TranspositionTable.getWins(statistics), "wins");
+    }
+}
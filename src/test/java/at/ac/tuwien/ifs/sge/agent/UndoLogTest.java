@@ -0,0 +1,107 @@
+package at.ac.tuwien.ifs.sge.agent;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertSame;
+
+import org.junit.jupiter.api.Test;
+
+public class UndoLogTest {
+    private static final int COUNT = 0;
+    private static final int RATIO = 1;
+    private static final int NAME = 2;
+
+    private static class Target implements UndoLog.Undoable {
+        private final UndoLog log;
+        private long count;
+        private float ratio;
+        private String name = "start";
+
+        Target(UndoLog log) {
+            this.log = log;
+        }
+
+        void setCount(long count) {
+            log.record(this, COUNT, this.count);
+            this.count = count;
+        }
+
+        void setRatio(float ratio) {
+            log.record(this, RATIO, this.ratio);
+            this.ratio = ratio;
+        }
+
+        void setName(String name) {
+            log.record(this, NAME, 0, null, this.name);
+            this.name = name;
+        }
+
+        @Override
+        public void undo(int field, long oldValue, Object key, Object oldReference) {
+            if (field == COUNT) count = oldValue;
+            else if (field == RATIO) ratio = UndoLog.toFloat(oldValue);
+            else name = (String) oldReference;
+        }
+    }
+
+    @Test
+    public void revertsNestedChangesLatestFirst() {
+        var log = new UndoLog();
+        var target = new Target(log);
+        var outer = log.mark();
+        target.setCount(1);
+        target.setName("outer");
+        var inner = log.mark();
+        target.setCount(2);
+        target.setCount(3);
+        target.setRatio(.25f);
+        target.setName("inner");
+
+        log.revert(inner);
+        assertEquals(1, target.count);
+        assertEquals(0f, target.ratio);
+        assertEquals("outer", target.name);
+        assertEquals(inner, log.mark());
+
+        log.revert(outer);
+        assertEquals(0, target.count);
+        assertEquals("start", target.name);
+        assertEquals(outer, log.mark());
+    }
+
+    @Test
+    public void recordsAgainAfterARevert() {
+        var log = new UndoLog();
+        var target = new Target(log);
+        var mark = log.mark();
+        target.setRatio(.5f);
+        log.revert(mark);
+        target.setRatio(.75f);
+        target.setRatio(1f);
+        log.revert(mark);
+        assertEquals(0f, target.ratio);
+    }
+
+    @Test
+    public void revertsMoreChangesThanTheInitialCapacity() {
+        var log = new UndoLog();
+        var target = new Target(log);
+        var mark = log.mark();
+        for (int i = 1; i <= 1000; i++) {
+            target.setCount(i);
+        }
+        log.revert(mark);
+        assertEquals(0, target.count);
+    }
+
+    @Test
+    public void eachThreadHasItsOwnLog() throws InterruptedException {
+        var log = UndoLog.get();
+        assertSame(log, UndoLog.get());
+        var other = new UndoLog[1];
+        var thread = new Thread(() -> other[0] = UndoLog.get());
+        thread.start();
+        thread.join();
+        assertNotSame(log, other[0]);
+    }
+}
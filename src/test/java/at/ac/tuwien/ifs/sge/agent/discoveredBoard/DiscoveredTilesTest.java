@@ -0,0 +1,87 @@
+package at.ac.tuwien.ifs.sge.agent.discoveredBoard;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+
+public class DiscoveredTilesTest {
+    // wider than two words, so that the counts cross word boundaries
+    private static final int WIDTH = 150;
+    private static final int HEIGHT = 9;
+
+    @Test
+    public void countsUndiscoveredTilesLikeBruteForce() {
+        var random = new Random(1);
+        var tiles = DiscoveredTiles.empty(WIDTH, HEIGHT);
+        var discovered = new boolean[HEIGHT][WIDTH];
+        for (int i = 0; i < 40; i++) {
+            var x = random.nextInt(WIDTH);
+            var y = random.nextInt(HEIGHT);
+            var radius = random.nextInt(4);
+            tiles = tiles.discover(x, y, radius);
+            markSquare(discovered, x, y, radius);
+            for (int check = 0; check < 50; check++) {
+                // also around and outside the edges of the map
+                var checkX = random.nextInt(WIDTH + 20) - 10;
+                var checkY = random.nextInt(HEIGHT + 20) - 10;
+                var checkRadius = random.nextInt(70);
+                assertEquals(countUndiscovered(discovered, checkX, checkY, checkRadius), tiles.countUndiscovered(checkX, checkY, checkRadius),
+                        "at " + checkX + ", " + checkY + " radius " + checkRadius);
+            }
+        }
+        assertEquals(countUndiscovered(discovered, 0, 0, WIDTH), WIDTH * HEIGHT - tiles.getDiscoveredCount());
+    }
+
+    @Test
+    public void countsAtTheCornersOfTheMap() {
+        var tiles = DiscoveredTiles.empty(WIDTH, HEIGHT).discover(0, 0, 1).discover(WIDTH - 1, HEIGHT - 1, 1);
+        assertEquals(0, tiles.countUndiscovered(0, 0, 1));
+        assertEquals(0, tiles.countUndiscovered(WIDTH - 1, HEIGHT - 1, 1));
+        assertEquals(5, tiles.countUndiscovered(1, 1, 1));
+        assertEquals(0, tiles.countUndiscovered(-5, -5, 2)); // completely outside
+        assertEquals(8, tiles.getDiscoveredCount());
+    }
+
+    @Test
+    public void discoverKeepsTheOldInstance() {
+        var before = DiscoveredTiles.empty(WIDTH, HEIGHT).discover(70, 4, 2);
+        var after = before.discover(67, 4, 2); // overlaps two columns
+        assertFalse(before.isDiscovered(65, 4));
+        assertTrue(after.isDiscovered(65, 4));
+        assertTrue(after.isDiscovered(70, 4));
+        assertEquals(25, before.getDiscoveredCount());
+        assertEquals(25 + 15, after.getDiscoveredCount());
+        assertFalse(before.isSameAs(after));
+    }
+
+    @Test
+    public void discoveringKnownTilesReturnsTheSameInstance() {
+        var tiles = DiscoveredTiles.empty(WIDTH, HEIGHT).discover(10, 4, 3);
+        assertSame(tiles, tiles.discover(10, 4, 2));
+        assertTrue(tiles.isSameAs(DiscoveredTiles.empty(WIDTH, HEIGHT).discover(10, 4, 3)));
+    }
+
+    private static void markSquare(boolean[][] discovered, int x, int y, int radius) {
+        for (int row = Math.max(0, y - radius); row <= Math.min(HEIGHT - 1, y + radius); row++) {
+            for (int column = Math.max(0, x - radius); column <= Math.min(WIDTH - 1, x + radius); column++) {
+                discovered[row][column] = true;
+            }
+        }
+    }
+
+    private static int countUndiscovered(boolean[][] discovered, int x, int y, int radius) {
+        var count = 0;
+        for (int row = y - radius; row <= y + radius; row++) {
+            for (int column = x - radius; column <= x + radius; column++) {
+                if (row < 0 || column < 0 || row >= HEIGHT || column >= WIDTH) continue;
+                if (!discovered[row][column]) count++;
+            }
+        }
+        return count;
+    }
+}